@@ -0,0 +1,236 @@
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class prints game events from a background thread.
+ * Games hand events over through a fixed ring: each is packed into a long,
+ * plus the ship it concerns, with no lock and no allocation, so any number
+ * of games on any number of threads can publish at once. A single writer
+ * thread formats whatever has arrived into one batch and prints it with a
+ * single write. If the writer falls a whole ring behind, new events are
+ * dropped and counted rather than holding up a game.
+ */
+public class AsyncConsoleSink implements GameListener, AutoCloseable 
+{
+    public static final int DEFAULT_CAPACITY = 4096;
+    
+    // Event kinds, in the low byte of a packed event.
+    private static final int STARTED = 0;
+    private static final int SHOT = 1;
+    private static final int SUNK = 2;
+    private static final int TURN = 3;
+    private static final int OVER = 4;
+    private static final long BY_COMPUTER = 1L << 8;
+    private static final long FLAG = 1L << 9; // Hit, player's turn or player won, by kind.
+    
+    private final PrintStream out;
+    private final int mask;
+    private final long[] events;
+    private final Ship[] ships;             // Ship named by each event, if any.
+    private final AtomicLongArray ready;    // Sequence + 1 of the event in each slot once written.
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile long consumed;         // Events the writer has taken.
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    
+    /** This creates a sink printing to standard output. */
+    public AsyncConsoleSink() 
+    {
+        this(System.out, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * This creates a sink.
+     * @param out Stream to print to.
+     * @param capacity Events that can wait to be printed; rounded up to a power of two.
+     */
+    public AsyncConsoleSink(PrintStream out, int capacity) 
+    {
+        this.out = out;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        events = new long[size];
+        ships = new Ship[size];
+        ready = new AtomicLongArray(size);
+        writer = new Thread(this::drainLoop, "game-console");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /** Gets the sink shared by games that print to the console; it is flushed at exit. */
+    public static AsyncConsoleSink shared() 
+    {
+        return Shared.SINK;
+    }
+    
+    /** Holds the shared sink, created on first use. */
+    private static final class Shared 
+    {
+        static final AsyncConsoleSink SINK = new AsyncConsoleSink();
+        
+        static 
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(SINK::close, "game-console-flush"));
+        }
+    }
+    
+    @Override
+    public void gameStarted(BattleshipsGame game) 
+    {
+        publish(STARTED, null);
+    }
+    
+    @Override
+    public void shotFired(BattleshipsGame game, boolean byComputer, int row, int col, boolean hit) 
+    {
+        Board target = byComputer ? game.getPlayerBoard() : game.getComputerBoard();
+        publish(SHOT | (byComputer ? BY_COMPUTER : 0) | (hit ? FLAG : 0) | (long) Board.pack(row, col) << 16,
+                hit ? target.getShipAt(row, col) : null);
+    }
+    
+    @Override
+    public void shipSunk(BattleshipsGame game, boolean byComputer, Ship ship) 
+    {
+        publish(SUNK | (byComputer ? BY_COMPUTER : 0), ship);
+    }
+    
+    @Override
+    public void turnChanged(BattleshipsGame game, boolean playerTurn) 
+    {
+        publish(TURN | (playerTurn ? FLAG : 0), null);
+    }
+    
+    @Override
+    public void gameOver(BattleshipsGame game, boolean playerWon, int shotsFired) 
+    {
+        publish(OVER | (playerWon ? FLAG : 0) | (long) shotsFired << 16, null);
+    }
+    
+    /** Gets how many events were dropped because the writer was a full ring behind. */
+    public long getDropped() 
+    {
+        return dropped.sum();
+    }
+    
+    /** Prints what is waiting and stops the writer; later events are dropped. */
+    @Override
+    public void close() 
+    {
+        closed = true;
+        LockSupport.unpark(writer);
+        try 
+        {
+            writer.join(1000);
+        } 
+        catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /** Claims a slot, fills it and marks it ready. */
+    private void publish(long event, Ship ship) 
+    {
+        long sequence;
+        do 
+        {
+            sequence = claimed.get();
+            if (closed || sequence - consumed > mask) 
+            {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        
+        int slot = (int) sequence & mask;
+        events[slot] = event;
+        ships[slot] = ship;
+        ready.set(slot, sequence + 1); // Publishes the plain writes above.
+        if (sleeping) LockSupport.unpark(writer);
+    }
+    
+    /** Writer thread: formats and prints batches until closed and drained. */
+    private void drainLoop() 
+    {
+        StringBuilder batch = new StringBuilder(4096);
+        long next = 0;
+        long reportedDrops = 0;
+        while (true) 
+        {
+            boolean wasClosed = closed; // Read first, so nothing published before close is missed.
+            int slot = (int) next & mask;
+            while (ready.get(slot) == next + 1) 
+            {
+                format(events[slot], ships[slot], batch);
+                ships[slot] = null;
+                next++;
+                consumed = next;
+                slot = (int) next & mask;
+            }
+            long drops = dropped.sum();
+            if (drops != reportedDrops) 
+            {
+                batch.append("(").append(drops - reportedDrops).append(" game messages dropped)\n");
+                reportedDrops = drops;
+            }
+            if (batch.length() > 0) 
+            {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+                continue;
+            }
+            if (wasClosed) return;
+            sleeping = true;
+            if (ready.get(slot) != next + 1 && !closed) LockSupport.parkNanos(this, 100_000_000L);
+            sleeping = false;
+        }
+    }
+    
+    /** Appends the console lines for one event, worded as the game always has. */
+    private static void format(long event, Ship ship, StringBuilder batch) 
+    {
+        boolean byComputer = (event & BY_COMPUTER) != 0;
+        boolean flag = (event & FLAG) != 0;
+        switch ((int) event & 0xFF) 
+        {
+            case STARTED -> batch.append("New game started!\n");
+            case SHOT -> 
+            {
+                int shot = (int) (event >>> 16);
+                if (byComputer) 
+                {
+                    batch.append("Computer shoots at ").append((char) ('A' + Board.rowOf(shot))).append(Board.colOf(shot) + 1)
+                         .append(": ").append(flag ? "HIT!" : "miss").append('\n');
+                    if (flag) batch.append("It hit your ").append(ship.getName()).append("!\n");
+                } 
+                else if (flag) 
+                {
+                    batch.append("You hit ").append(ship.getName()).append("!\n");
+                } 
+                else 
+                {
+                    batch.append("Miss! Computer's turn...\n");
+                }
+            }
+            case SUNK -> batch.append(byComputer ? "Computer sank your " : "You sank ").append(ship.getName()).append("!\n");
+            case TURN -> 
+            {
+                if (!flag) batch.append("Computer is thinking...\n");
+            }
+            case OVER -> 
+            {
+                if (flag) batch.append("You won in ").append(event >>> 16).append(" shots!\n");
+                else batch.append("Computer wins!\n");
+            }
+            default -> 
+            {
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class saves games to disk without making the caller wait.
+ * submit encodes the game into a byte snapshot on the calling thread, which is
+ * cheap and leaves nothing shared with the live game; a background thread then
+ * writes it to a temp file and renames it over the save, so the save file is
+ * always complete. Two buffers take turns: one is being written while the next
+ * snapshot is filled. Snapshots that arrive while a write is running replace
+ * each other, so a slow disk only ever has the newest game left to write.
+ * The save can be read back on the same thread, after any saves queued before it.
+ */
+public class AutosaveService implements Closeable 
+{
+    private final Path target;
+    private final Path temp;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> 
+    {
+        Thread thread = new Thread(task, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Guarded by this.
+    private ByteBuffer pending;  // Newest snapshot not yet written.
+    private ByteBuffer spare;    // Written buffer handed back for reuse.
+    private List<Consumer<Boolean>> callbacks = new ArrayList<>(); // Waiting on pending.
+    private boolean writing;     // A write task is queued or running.
+    
+    /**
+     * This creates a service for one save file.
+     * @param filename File to keep up to date; it can be read back with BattleshipsGame.loadGame.
+     */
+    public AutosaveService(String filename) 
+    {
+        this.target = Path.of(filename);
+        this.temp = Path.of(filename + ".tmp");
+    }
+    
+    /** Queues a save of the game as it is now. */
+    public void submit(BattleshipsGame game) 
+    {
+        submit(game, null);
+    }
+    
+    /**
+     * Queues a save of the game as it is now.
+     * Must be called on the thread that changes the game, e.g. the Swing event thread.
+     * @param onDone Told whether the write succeeded, on the writer thread; may be null.
+     *               If a newer snapshot replaces this one, it is told about that write.
+     */
+    public void submit(BattleshipsGame game, Consumer<Boolean> onDone) 
+    {
+        ByteBuffer snapshot;
+        synchronized (this) 
+        {
+            snapshot = spare;
+            spare = null;
+        }
+        snapshot = game.encode(snapshot);
+        
+        synchronized (this) 
+        {
+            if (pending != null) spare = pending; // Superseded before it was written.
+            pending = snapshot;
+            if (onDone != null) callbacks.add(onDone);
+            if (writing) return;
+            writing = true;
+        }
+        writer.execute(this::drain);
+    }
+    
+    /**
+     * Reads the save file back without making the caller wait.
+     * @param onLoaded Given the game, or null if it could not be read, on the writer thread.
+     */
+    public void load(Consumer<BattleshipsGame> onLoaded) 
+    {
+        writer.execute(() -> onLoaded.accept(BattleshipsGame.loadGame(target.toString())));
+    }
+    
+    /**
+     * Waits for queued saves to reach disk and stops the writer.
+     * @throws IOException if they did not finish within two seconds.
+     */
+    @Override
+    public void close() throws IOException 
+    {
+        writer.shutdown();
+        try 
+        {
+            if (!writer.awaitTermination(2, TimeUnit.SECONDS)) throw new IOException("Autosave did not finish");
+        } 
+        catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for autosave");
+        }
+    }
+    
+    /** Writes snapshots until none are pending. */
+    private void drain() 
+    {
+        while (true) 
+        {
+            ByteBuffer snapshot;
+            List<Consumer<Boolean>> done;
+            synchronized (this) 
+            {
+                if (pending == null) 
+                {
+                    writing = false;
+                    return;
+                }
+                snapshot = pending;
+                pending = null;
+                done = callbacks;
+                callbacks = new ArrayList<>();
+            }
+            
+            boolean saved = write(snapshot);
+            for (Consumer<Boolean> callback : done) 
+            {
+                callback.accept(saved);
+            }
+            synchronized (this) 
+            {
+                spare = snapshot;
+            }
+        }
+    }
+    
+    private boolean write(ByteBuffer snapshot) 
+    {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) 
+             {
+            while (snapshot.hasRemaining()) channel.write(snapshot);
+            channel.force(false);
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Error autosaving: " + e.getMessage());
+            return false;
+        }
+        try 
+        {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Error autosaving: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -10,24 +10,45 @@ import java.io.*;
 public class BattleGui implements ActionListener 
 {
     private static final String DEFAULT_FILENAME = "battleship_save.dat";
-    private static final int GRID_SIZE = Board.SIZE;
+    private static final String AUTOSAVE_FILENAME = "battleship_autosave.dat";
+    private static final String JOURNAL_BASENAME = "battleship_journal"; // Autosave and crash recovery.
     
-    private final JButton[] buttonArray = new JButton[GRID_SIZE * GRID_SIZE];
+    private BoardView boardView;
     private BattleshipsGame game;
     private final JFrame frame;
+    private final AutosaveService saver = new AutosaveService(DEFAULT_FILENAME);
+    private final AutosaveService autosave = new AutosaveService(AUTOSAVE_FILENAME);
+    private final TurnPipeline turns = new TurnPipeline(); // Computer moves off the event thread.
     
-    /** This creates new GUI with game instance. */
+    /**
+     * This creates new GUI with game instance.
+     * If it is the computer's turn, e.g. in a recovered game, the computer moves at once.
+     */
     public BattleGui(BattleshipsGame game) 
     {
         this.game = game;
         this.frame = new JFrame("Battleships Game");
+        if (game.getJournal() == null) startJournal();
         initializeGUI();
+        if (!game.isPlayerTurn() && !game.isGameOver()) 
+        {
+            turns.startComputerTurn(game, this::computerTurnDone);
+        }
     }
     
     /** This sets up main window components. */
     private void initializeGUI() 
     {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() 
+        {
+            @Override
+            public void windowClosing(WindowEvent e) 
+            {
+                turns.close();
+                closeSavers(); // Runs before the frame exits the JVM.
+            }
+        });
         frame.setJMenuBar(createMenuBar());
         frame.setContentPane(createMainPanel());
         frame.pack();
@@ -60,32 +81,17 @@ public class BattleGui implements ActionListener
     private JPanel createMainPanel() 
     {
         JPanel panel = new JPanel(new BorderLayout());
-        JPanel gridPanel = new JPanel(new GridLayout(GRID_SIZE, GRID_SIZE));
+        boardView = new BoardView(game, this::handleGridClick);
         
-        // Initialize grid buttons
-        for (int i = 0; i < buttonArray.length; i++) 
-        {
-            buttonArray[i] = new JButton();
-            buttonArray[i].setActionCommand(String.valueOf(i));
-            buttonArray[i].addActionListener(this);
-            buttonArray[i].setPreferredSize(new Dimension(50, 50));
-            gridPanel.add(buttonArray[i]);
-        }
-        
-        panel.add(gridPanel, BorderLayout.CENTER);
+        panel.add(new JScrollPane(boardView), BorderLayout.CENTER);
         updateBoard();
         return panel;
     }
     
-    /** This handles all button clicks.*/
+    /** This handles menu selections.*/
     public void actionPerformed(ActionEvent e) 
     {
-        if (e.getSource() instanceof JMenuItem) 
-        {
-            handleMenuAction(e.getActionCommand());
-        } else if (e.getSource() instanceof JButton && game.isPlayerTurn()) {
-            handleGridClick((JButton) e.getSource());
-        }
+        handleMenuAction(e.getActionCommand());
     }
     
     /** This processes the menu selection. */
@@ -94,20 +100,25 @@ public class BattleGui implements ActionListener
         switch (command) 
         {
             case "New Game":
+                turns.cancel();
                 game.startNewGame();
                 break;
             case "Save Game":
-                if (game.saveGame(DEFAULT_FILENAME)) 
+                // Written in the background; confirm once it is on disk.
+                saver.submit(game, saved -> 
                 {
-                    JOptionPane.showMessageDialog(frame, "Game saved!");
-                }
+                    if (saved) 
+                    {
+                        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Game saved!"));
+                    }
+                });
                 break;
             case "Load Game":
-                BattleshipsGame loaded = BattleshipsGame.loadGame(DEFAULT_FILENAME);
-                if (loaded != null) 
+                // Read in the background, after any save still being written.
+                saver.load(loaded -> 
                 {
-                    game = loaded;
-                }
+                    if (loaded != null) SwingUtilities.invokeLater(() -> useLoadedGame(loaded));
+                });
                 break;
             case "View Fleet":
                 showFleetStatus();
@@ -116,68 +127,69 @@ public class BattleGui implements ActionListener
         updateBoard();
     }
     
+    /** Replaces the game with one read from the save file, unless this window cannot play it. */
+    private void useLoadedGame(BattleshipsGame loaded) 
+    {
+        if (loaded.isSalvo()) 
+        {
+            // Salvo saves come from HeadlessGame or the server; shots here are fired one click at a time.
+            JOptionPane.showMessageDialog(frame, "That save is a salvo game, which can only be played headless or over the server.");
+            return;
+        }
+        turns.cancel();
+        GameJournal journal = game.getJournal();
+        game = loaded;
+        if (journal != null) journal.follow(game); // Queued on the journal's own thread.
+        else startJournal();
+        if (!game.isPlayerTurn() && !game.isGameOver()) 
+        {
+            turns.startComputerTurn(game, this::computerTurnDone); // Saved mid-turn.
+        }
+        updateBoard();
+    }
+    
     /** This processes grid clicks during the player's turn. */
-    private void handleGridClick(JButton button) 
+    private void handleGridClick(int row, int col) 
     {
-        int index = Integer.parseInt(button.getActionCommand());
-        int row = index / GRID_SIZE;
-        int col = index % GRID_SIZE;
+        if (!game.isPlayerTurn()) return;
         
-        if (game.processPlayerShot(row, col)) 
+        if (game.firePlayerShot(row, col)) 
         {
-            updateBoard();
-            
-            // If computer's turn, process after short delay
-            if (!game.isPlayerTurn()) 
+            boardView.cellChanged(row, col); // The only cell of this board a turn can change.
+            if (!game.isPlayerTurn() && !game.isGameOver()) 
             {
-                Timer timer = new Timer(1000, e -> 
-                {
-                    updateBoard();
-                    ((Timer)e.getSource()).stop();
-                });
-                timer.setRepeats(false);
-                timer.start();
+                turns.startComputerTurn(game, this::computerTurnDone);
+            } 
+            else 
+            {
+                autosave.submit(game);
             }
+            boardView.setEnabled(game.isPlayerTurn() && !game.isGameOver());
         }
     }
     
-    /** Updates all grid buttons to reflect current game state. */
-    private void updateBoard() 
+    /** Hands the board back to the player once the computer has fired. */
+    private void computerTurnDone() 
     {
-        for (int i = 0; i < buttonArray.length; i++) 
-        {
-            int row = i / GRID_SIZE;
-            int col = i % GRID_SIZE;
-            char state = game.getCellState(row, col, false);
-            
-            buttonArray[i].setText(String.valueOf(state));
-            buttonArray[i].setBackground(getColorForState(state));
-            buttonArray[i].setEnabled(game.isPlayerTurn() && !game.isGameOver());
-        }
+        autosave.submit(game);
+        boardView.setEnabled(game.isPlayerTurn() && !game.isGameOver());
     }
     
-    /** This maps cell states to colors. */
-    private Color getColorForState(char state) 
+    /** Redraws the whole board, e.g. after the game is replaced. */
+    private void updateBoard() 
     {
-        return switch (state) 
-        {
-            case 'X' -> Color.RED;    // Hit
-            case 'O' -> Color.WHITE;  // Miss
-            case 'B' -> Color.YELLOW; // Battleship (view fleet)
-            case 'C' -> Color.ORANGE; // Cruiser
-            case 'D' -> Color.GRAY;   // Destroyer
-            case 'S' -> Color.PINK;   // Submarine
-            default  -> Color.BLUE;   // Water
-        };
+        boardView.setGame(game);
+        boardView.setEnabled(game.isPlayerTurn() && !game.isGameOver());
     }
     
     /** Shows player's ship positions in dialog. */
     private void showFleetStatus() 
     {
+        int size = game.getBoardSize();
         StringBuilder sb = new StringBuilder("Your Fleet:\n");
-        for (int i = 0; i < GRID_SIZE; i++) 
+        for (int i = 0; i < size; i++) 
         {
-            for (int j = 0; j < GRID_SIZE; j++) 
+            for (int j = 0; j < size; j++) 
             {
                 sb.append(game.getCellState(i, j, true)).append(" ");
             }
@@ -186,13 +198,42 @@ public class BattleGui implements ActionListener
         JOptionPane.showMessageDialog(frame, sb.toString());
     }
     
-    /** Launches the game. */
+    /** Finishes any saves and journal entries still being written. */
+    private void closeSavers() 
+    {
+        try 
+        {
+            saver.close();
+            autosave.close();
+            GameJournal journal = game.getJournal();
+            if (journal != null) journal.close();
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Error finishing saves: " + e.getMessage());
+        }
+    }
+    
+    /** Starts journaling the current game so every turn is kept on disk. */
+    private void startJournal() 
+    {
+        GameJournal.start(JOURNAL_BASENAME, game);
+    }
+    
+    /** Launches the game, picking up where the last session stopped if it can. */
     public static void main(String[] args) 
     {
-        SwingUtilities.invokeLater(() -> 
+        GameMetrics.register();
+        BattleshipsGame recovered = null;
+        try 
         {
-            BattleshipsGame game = new BattleshipsGame();
-            new BattleGui(game);
-        });
+            recovered = GameJournal.recover(JOURNAL_BASENAME); // Before the event thread has the game.
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Error recovering: " + e.getMessage());
+        }
+        BattleshipsGame game = recovered != null ? recovered : new BattleshipsGame();
+        SwingUtilities.invokeLater(() -> new BattleGui(game));
     }
 }
\ No newline at end of file
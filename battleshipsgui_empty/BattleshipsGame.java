@@ -1,12 +1,29 @@
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * This class is the main game controller.
  * It manages turns, win conditions, and game state.
+ * Every game has a seed from which all of its randomness is split, so
+ * startNewGame(seed) with the same seed replays the same game.
+ * What happens is published to GameListeners; by default the shared
+ * AsyncConsoleSink prints it, off the game's thread.
+ * In salvo games each side fires one shot per ship it has afloat every turn,
+ * whether they hit or not; the player's salvo goes through firePlayerSalvo.
  */
 public class BattleshipsGame implements Serializable 
 {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    
+    // Save file header
+    private static final int SAVE_MAGIC = 0x42534731; // "BSG1"
+    private static final short SAVE_VERSION = 1;
     
     // Game boards
     private Board playerBoard;
@@ -17,9 +34,22 @@ public class BattleshipsGame implements Serializable
     private ComputerPlayer computerPlayer;
     
     // Game state
+    private final int boardSize;
     private boolean isPlayerTurn;
     private int shotsFired;
     private boolean gameOver;
+    private transient GameJournal journal; // Optional; records every change.
+    private transient volatile GameListener[] listeners = {AsyncConsoleSink.shared()}; // Copied on change.
+    private int lastComputerShot = -1;     // Packed row * size + col, -1 before the first.
+    private transient SplittableRandom seeds; // Source of seeds for new games.
+    private long seed;                     // Seed of the current game.
+    private boolean salvo;                 // This game is played in salvos.
+    private boolean salvoNext;             // Rules for games started from now on.
+    private transient int[] salvoResults;  // Outcomes of the player's last salvo, as by Board.recordSalvo.
+    private transient int salvoCount;
+    private transient int[] computerSalvo; // The computer's last salvo, packed with Board.pack.
+    private transient int[] computerSalvoResults;
+    private transient int computerSalvoCount;
     
     // Ship names with personalization
     private final String[] PLAYER_SHIP_NAMES = 
@@ -42,92 +72,410 @@ public class BattleshipsGame implements Serializable
     /** Initializes new game. */
     public BattleshipsGame() 
     {
-        initializeGame();
+        this(Board.DEFAULT_SIZE);
+    }
+    
+    /**
+     * Initializes new game on larger or smaller boards.
+     * @param boardSize Cells per side of each board.
+     */
+    public BattleshipsGame(int boardSize) 
+    {
+        this(boardSize, new SplittableRandom());
+    }
+    
+    /**
+     * Initializes a game whose every new game is reproducible.
+     * @param boardSize Cells per side of each board.
+     * @param seeds Source of the seed for each new game.
+     */
+    public BattleshipsGame(int boardSize, SplittableRandom seeds) 
+    {
+        this.boardSize = boardSize;
+        this.seeds = seeds;
+        initializeGame(seeds.nextLong());
+    }
+    
+    /** Rebuilds a game around boards read from a save. */
+    private BattleshipsGame(Board playerBoard, Board computerBoard) 
+    {
+        this.boardSize = playerBoard.getSize();
+        this.playerBoard = playerBoard;
+        this.computerBoard = computerBoard;
+        this.seeds = new SplittableRandom();
+        this.seed = seeds.nextLong(); // The saved position, not a seed, is what restores this game.
+        SplittableRandom root = new SplittableRandom(seed);
+        humanPlayer = new Player("Player", playerBoard, PLAYER_SHIP_NAMES, root.split());
+        computerPlayer = new ComputerPlayer("Computer", computerBoard, COMPUTER_SHIP_NAMES, root.split());
     }
     
-    /** Sets up fresh game state. */
-    private void initializeGame() 
+    /**
+     * Sets up fresh game state.
+     * @param seed Seed the players' random streams are split from.
+     */
+    private void initializeGame(long seed) 
     {
-        playerBoard = new Board();
-        computerBoard = new Board();
-        humanPlayer = new Player("Player", playerBoard, PLAYER_SHIP_NAMES);
-        computerPlayer = new ComputerPlayer("Computer", computerBoard, COMPUTER_SHIP_NAMES);
+        this.seed = seed;
+        SplittableRandom root = new SplittableRandom(seed);
+        playerBoard = new Board(boardSize);
+        computerBoard = new Board(boardSize);
+        humanPlayer = new Player("Player", playerBoard, PLAYER_SHIP_NAMES, root.split());
+        computerPlayer = new ComputerPlayer("Computer", computerBoard, COMPUTER_SHIP_NAMES, root.split());
         isPlayerTurn = true;
         shotsFired = 0;
         gameOver = false;
+        lastComputerShot = -1;
+        salvo = salvoNext;
+        salvoCount = 0;
+        computerSalvoCount = 0;
     }
     
     /** Starts new game with random ship placement. */
     public void startNewGame() 
     {
-        initializeGame();
+        startNewGame(seeds.nextLong());
+    }
+    
+    /**
+     * Starts a new game from a seed; the same seed gives the same fleets and,
+     * for the same player shots, the same computer replies.
+     */
+    public void startNewGame(long seed) 
+    {
+        initializeGame(seed);
         humanPlayer.placeShips();
         computerPlayer.placeShips();
-        System.out.println("New game started!");
+        if (journal != null) journal.recordNewGame(this);
+        for (GameListener listener : listeners) listener.gameStarted(this);
     }
     
     /**
-     * Processes player's shot.
+     * Processes player's shot, and the computer's reply if it missed.
      * @return true if shot was valid.
      */
     public boolean processPlayerShot(int row, int col) 
     {
-        if (gameOver || !isPlayerTurn) return false;
+        long started = GameMetrics.start();
+        if (!firePlayerShot(row, col)) return false;
+        if (!isPlayerTurn && !gameOver) computerTurn();
+        GameMetrics.PLAYER_SHOT.record(started);
+        return true;
+    }
+    
+    /**
+     * Processes player's salvo, then the computer's unless the game is over.
+     * @return true if the salvo was valid.
+     */
+    public boolean processPlayerSalvo(int[] shots, int count) 
+    {
+        long started = GameMetrics.start();
+        if (!firePlayerSalvo(shots, count)) return false;
+        if (!isPlayerTurn && !gameOver) computerTurn();
+        GameMetrics.PLAYER_SHOT.record(started);
+        return true;
+    }
+    
+    /**
+     * Processes player's salvo only, in a salvo game. The whole salvo is checked
+     * and applied by the board in one pass, and whether the game is over is
+     * decided once for it. The computer's turn follows, which the caller runs.
+     * @param shots One to getSalvoSize() shots, packed with Board.pack.
+     * @return true if the salvo was valid; an invalid salvo changes nothing.
+     */
+    public boolean firePlayerSalvo(int[] shots, int count) 
+    {
+        if (gameOver || !isPlayerTurn || !salvo || count < 1 || count > getSalvoSize()) return false;
+        if (salvoResults == null || salvoResults.length < count) salvoResults = new int[Math.max(16, count)];
+        int[] results = salvoResults;
+        if (computerBoard.recordSalvo(shots, count, results) < 0) return false;
+        
+        salvoCount = count;
+        shotsFired += count;
+        for (int i = 0; i < count; i++) GameMetrics.countShot(results[i] != Board.SHOT_MISS);
+        if (computerBoard.allShipsSunk()) 
+        {
+            gameOver = true;
+            GameMetrics.countGameCompleted();
+        } 
+        else 
+        {
+            isPlayerTurn = false;
+        }
+        if (journal != null) journal.recordSalvo(false, shots, count);
+        reportPlayerSalvo(shots, results, count);
+        return true;
+    }
+    
+    /**
+     * Processes player's shot only. After a miss it is the computer's turn,
+     * which the caller runs, e.g. off the Swing event thread with TurnPipeline.
+     * @return true if shot was valid.
+     */
+    public boolean firePlayerShot(int row, int col) 
+    {
+        if (gameOver || !isPlayerTurn || salvo) return false;
         
         if (computerBoard.isValidShot(row, col)) 
         {
-            shotsFired++;
-            boolean isHit = computerBoard.recordShot(row, col);
-            
-            if (isHit) 
-            {
-                Ship hitShip = computerBoard.getShipAt(row, col);
-                System.out.println("You hit " + hitShip.getName() + "!");
-                
-                if (computerBoard.allShipsSunk()) 
-                {
-                    gameOver = true;
-                    System.out.println("You won in " + shotsFired + " shots!");
-                }
-            } 
-            else 
-            {
-                System.out.println("Miss! Computer's turn...");
-                isPlayerTurn = false;
-                computerTurn();
-            }
+            boolean isHit = applyPlayerShot(row, col);
+            reportPlayerShot(row, col, isHit);
             return true;
         }
         return false;
     }
     
+    /** Publishes the outcome of a player shot. */
+    private void reportPlayerShot(int row, int col, boolean isHit) 
+    {
+        reportShot(false, row, col, isHit);
+    }
+    
     /** Handles computer's turn. */
-    private void computerTurn() 
+    void computerTurn() 
     {
-        System.out.println("Computer is thinking...");
-        
-        // Generate and execute computer's move
-        int[] shot = computerPlayer.makeMove(playerBoard);
-        boolean isHit = playerBoard.recordShot(shot[0], shot[1]);
-        computerPlayer.recordShotResult(shot[0], shot[1], isHit);
-        
-         // Print results
-        System.out.println("Computer shoots at " + (char)('A'+shot[0]) + (shot[1]+1) + 
-                         ": " + (isHit ? "HIT!" : "miss"));
-        
-        if (isHit) 
+        long started = GameMetrics.start();
+        if (salvo) 
         {
-            Ship hitShip = playerBoard.getShipAt(shot[0], shot[1]);
-            System.out.println("It hit your " + hitShip.getName() + "!");
-            
-            if (playerBoard.allShipsSunk()) 
+            computerSalvo();
+        } 
+        else 
+        {
+            // Generate and execute computer's move
+            int shot = computerPlayer.nextShot(playerBoard);
+            int row = Board.rowOf(shot);
+            int col = Board.colOf(shot);
+            boolean isHit = applyComputerShot(row, col);
+            reportComputerShot(row, col, isHit);
+        }
+        GameMetrics.COMPUTER_TURN.record(started);
+    }
+    
+    /**
+     * Fires the computer's salvo. Targeting learns from each result before it
+     * picks again, so the computer aims its shots one at a time; the salvo is
+     * journaled as one and the turn passes once, after the last shot.
+     */
+    private void computerSalvo() 
+    {
+        int count = getSalvoSize();
+        if (computerSalvo == null || computerSalvo.length < count) 
+        {
+            computerSalvo = new int[Math.max(16, count)];
+            computerSalvoResults = new int[computerSalvo.length];
+        }
+        computerSalvoCount = 0;
+        while (computerSalvoCount < count && !gameOver) 
+        {
+            int shot = computerPlayer.nextShot(playerBoard);
+            int row = Board.rowOf(shot);
+            int col = Board.colOf(shot);
+            boolean isHit = playerBoard.recordShot(row, col);
+            int ship = playerBoard.getShipIndexAt(row, col);
+            computerSalvo[computerSalvoCount] = shot;
+            computerSalvoResults[computerSalvoCount++] = !isHit ? Board.SHOT_MISS 
+                                                         : (ship + 1) * 2 + (playerBoard.shipAfloat(ship) == 0 ? 1 : 0);
+            computerPlayer.recordShotResult(row, col, isHit);
+            lastComputerShot = row * boardSize + col;
+            GameMetrics.countShot(isHit);
+            if (isHit && playerBoard.allShipsSunk()) 
             {
                 gameOver = true;
-                System.out.println("Computer wins!");
+                GameMetrics.countGameCompleted();
             }
+            if (computerSalvoCount == count || gameOver) isPlayerTurn = true;
+            reportComputerShot(row, col, isHit);
+        }
+        if (journal != null) journal.recordSalvo(true, computerSalvo, computerSalvoCount);
+    }
+    
+    /**
+     * Completes the computer's turn with a shot chosen elsewhere.
+     * The computer player is not told the result; the caller does that
+     * on whichever thread owns the computer's targeting state.
+     * @return true if the shot hit.
+     */
+    boolean completeComputerTurn(int row, int col) 
+    {
+        boolean isHit = recordComputerShot(row, col);
+        reportComputerShot(row, col, isHit);
+        return isHit;
+    }
+    
+    /** Publishes the outcome of a computer shot. */
+    private void reportComputerShot(int row, int col, boolean isHit) 
+    {
+        reportShot(true, row, col, isHit);
+    }
+    
+    /** Tells every listener about each shot of the player's salvo, then what followed from it. */
+    private void reportPlayerSalvo(int[] shots, int[] results, int count) 
+    {
+        for (GameListener listener : listeners) 
+        {
+            for (int i = 0; i < count; i++) 
+            {
+                int result = results[i];
+                listener.shotFired(this, false, Board.rowOf(shots[i]), Board.colOf(shots[i]), result != Board.SHOT_MISS);
+                if ((result & 1) != 0) listener.shipSunk(this, false, computerBoard.getShip(result / 2 - 1));
+            }
+            if (gameOver) listener.gameOver(this, true, shotsFired);
+            else listener.turnChanged(this, isPlayerTurn);
+        }
+    }
+    
+    /** Tells every listener about a shot and what followed from it. */
+    private void reportShot(boolean byComputer, int row, int col, boolean isHit) 
+    {
+        GameListener[] targets = listeners;
+        if (targets.length == 0) return;
+        Ship ship = isHit ? (byComputer ? playerBoard : computerBoard).getShipAt(row, col) : null;
+        for (GameListener listener : targets) 
+        {
+            listener.shotFired(this, byComputer, row, col, isHit);
+            if (ship != null && ship.isSunk()) listener.shipSunk(this, byComputer, ship);
+            if (gameOver) listener.gameOver(this, !byComputer, shotsFired);
+            else if (isPlayerTurn == byComputer) listener.turnChanged(this, isPlayerTurn);
+        }
+    }
+    
+    /**
+     * Applies a valid player shot to the game state. A miss passes the turn.
+     * Shared by live play and journal replay, so it must not print or ask the AI.
+     * @return true if the shot hit.
+     */
+    boolean applyPlayerShot(int row, int col) 
+    {
+        shotsFired++;
+        boolean isHit = computerBoard.recordShot(row, col);
+        GameMetrics.countShot(isHit);
+        if (isHit && computerBoard.allShipsSunk()) 
+        {
+            gameOver = true;
+            GameMetrics.countGameCompleted();
+        }
+        if (!isHit) isPlayerTurn = false;
+        if (journal != null) journal.recordShot(false, row * boardSize + col);
+        return isHit;
+    }
+    
+    /**
+     * Applies a valid computer shot to the game state and returns control to the player.
+     * @return true if the shot hit.
+     */
+    boolean applyComputerShot(int row, int col) 
+    {
+        boolean isHit = recordComputerShot(row, col);
+        computerPlayer.recordShotResult(row, col, isHit);
+        return isHit;
+    }
+    
+    /** Applies a valid computer shot to the boards and turn state only. */
+    private boolean recordComputerShot(int row, int col) 
+    {
+        boolean isHit = playerBoard.recordShot(row, col);
+        lastComputerShot = row * boardSize + col;
+        GameMetrics.countShot(isHit);
+        if (isHit && playerBoard.allShipsSunk()) 
+        {
+            gameOver = true;
+            GameMetrics.countGameCompleted();
         }
-        
         isPlayerTurn = true; // Return control to player
+        if (journal != null) journal.recordShot(true, row * boardSize + col);
+        return isHit;
+    }
+    
+    /**
+     * Applies one shot of a salvo during journal replay; the turn passes after
+     * the salvo's last shot, as in live play.
+     * @return true if the shot hit.
+     */
+    boolean replaySalvoShot(boolean byComputer, int row, int col, boolean last) 
+    {
+        Board target = byComputer ? playerBoard : computerBoard;
+        boolean isHit = target.recordShot(row, col);
+        if (byComputer) 
+        {
+            computerPlayer.recordShotResult(row, col, isHit);
+            lastComputerShot = row * boardSize + col;
+        } 
+        else 
+        {
+            shotsFired++;
+        }
+        if (isHit && target.allShipsSunk()) gameOver = true;
+        if (byComputer ? last || gameOver : last && !gameOver) isPlayerTurn = byComputer;
+        return isHit;
+    }
+    
+    /** Clears both boards for a journal replay of a new game; ships follow as placements. */
+    void resetForReplay(boolean salvo) 
+    {
+        salvoNext = salvo;
+        initializeGame(seeds.nextLong());
+    }
+    
+    /** Places a ship during journal replay, named as a fresh game would name it. */
+    boolean replayPlacement(boolean computerSide, int row, int col, Ship.Type type, boolean vertical) 
+    {
+        Board board = computerSide ? computerBoard : playerBoard;
+        String[] names = computerSide ? COMPUTER_SHIP_NAMES : PLAYER_SHIP_NAMES;
+        return board.placeShip(row, col, type, names[type.ordinal()], vertical);
+    }
+    
+    /** Adds a listener for this game's events. */
+    public synchronized void addListener(GameListener listener) 
+    {
+        GameListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+    
+    /** Removes a listener, if present. */
+    public synchronized void removeListener(GameListener listener) 
+    {
+        for (int i = 0; i < listeners.length; i++) 
+        {
+            if (listeners[i] == listener) 
+            {
+                GameListener[] shrunk = new GameListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+    
+    /** Turns console messages off, e.g. for games hosted by a server, or back on. */
+    public void setQuiet(boolean quiet) 
+    {
+        removeListener(AsyncConsoleSink.shared());
+        if (!quiet) addListener(AsyncConsoleSink.shared());
+    }
+    
+    /** Attaches a journal that records every later change, or detaches with null. */
+    void setJournal(GameJournal journal) 
+    {
+        this.journal = journal;
+    }
+    
+    GameJournal getJournal() 
+    { 
+        return journal; 
+    }
+    
+    Board getPlayerBoard() 
+    { 
+        return playerBoard; 
+    }
+    Board getComputerBoard() 
+    { 
+        return computerBoard; 
+    }
+    ComputerPlayer getComputerPlayer() 
+    { 
+        return computerPlayer; 
     }
     
     /** Gets cell state for display. */
@@ -140,10 +488,13 @@ public class BattleshipsGame implements Serializable
     /** Saves game state to file. */
     public boolean saveGame(String filename) 
     {
-        try (ObjectOutputStream out = new ObjectOutputStream(
-             new FileOutputStream(filename))) 
+        long started = GameMetrics.start();
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) 
              {
-            out.writeObject(this);
+            ByteBuffer buffer = encode();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            GameMetrics.SAVE.record(started);
             return true;
         } 
         catch (IOException e) 
@@ -156,10 +507,18 @@ public class BattleshipsGame implements Serializable
      /** Loads game state from file. */
     public static BattleshipsGame loadGame(String filename) 
     {
-        try (ObjectInputStream in = new ObjectInputStream(
-             new FileInputStream(filename))) 
+        long started = GameMetrics.start();
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) 
              {
-            return (BattleshipsGame) in.readObject();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) 
+            {
+                if (channel.read(buffer) < 0) throw new EOFException("Save file is truncated");
+            }
+            buffer.flip();
+            BattleshipsGame game = decode(buffer);
+            GameMetrics.LOAD.record(started);
+            return game;
         } 
         catch (Exception e) 
         {
@@ -168,6 +527,65 @@ public class BattleshipsGame implements Serializable
         }
     }
     
+    /**
+     * Encodes the game in the binary save format.
+     * Layout: magic, version, turn/game-over/salvo flags, shots fired,
+     * player board, computer board, computer player state.
+     */
+    ByteBuffer encode() 
+    {
+        return encode(null);
+    }
+    
+    /**
+     * Encodes the game, reusing a buffer when it is big enough.
+     * @param reuse Buffer to overwrite, or null to allocate.
+     */
+    ByteBuffer encode(ByteBuffer reuse) 
+    {
+        int bytes = 4 + 2 + 1 + 4 + playerBoard.encodedSize()
+                    + computerBoard.encodedSize() + ComputerPlayer.STATE_BYTES;
+        ByteBuffer out = reuse != null && reuse.capacity() >= bytes 
+                         ? reuse.clear().limit(bytes) : ByteBuffer.allocate(bytes);
+        out.putInt(SAVE_MAGIC);
+        out.putShort(SAVE_VERSION);
+        out.put((byte) ((isPlayerTurn ? 1 : 0) | (gameOver ? 2 : 0) | (salvo ? 4 : 0)));
+        out.putInt(shotsFired);
+        playerBoard.writeTo(out);
+        computerBoard.writeTo(out);
+        computerPlayer.writeState(out);
+        return out.flip();
+    }
+    
+    /**
+     * Decodes a game written by encode.
+     * @throws IOException if the data is not a save this version can read.
+     */
+    static BattleshipsGame decode(ByteBuffer in) throws IOException 
+    {
+        try 
+        {
+            if (in.getInt() != SAVE_MAGIC) throw new IOException("Not a Battleships save file");
+            short version = in.getShort();
+            if (version != SAVE_VERSION) throw new IOException("Unsupported save version " + version);
+            int flags = in.get();
+            int shots = in.getInt();
+            
+            BattleshipsGame game = new BattleshipsGame(Board.readFrom(in), Board.readFrom(in));
+            if (game.computerBoard.getSize() != game.boardSize) throw new IOException("Board sizes differ");
+            game.computerPlayer.readState(in);
+            game.isPlayerTurn = (flags & 1) != 0;
+            game.gameOver = (flags & 2) != 0;
+            game.salvo = game.salvoNext = (flags & 4) != 0;
+            game.shotsFired = shots;
+            return game;
+        } 
+        catch (BufferUnderflowException e) 
+        {
+            throw new IOException("Save file is truncated");
+        }
+    }
+    
     // Getters
     public boolean isGameOver() 
     { 
@@ -181,6 +599,48 @@ public class BattleshipsGame implements Serializable
     { 
         return shotsFired; 
     }
+    public long getSeed() 
+    { 
+        return seed; 
+    }
+    public int getBoardSize() 
+    { 
+        return boardSize; 
+    }
+    public int getLastComputerShot() 
+    { 
+        return lastComputerShot; 
+    }
+    public boolean isSalvo() 
+    { 
+        return salvo; 
+    }
+    /** Chooses salvo rules, or with false one shot a turn, for games started from now on. */
+    public void setSalvo(boolean salvo) 
+    { 
+        salvoNext = salvo; 
+    }
+    /** Gets how many shots the side to move may fire this turn. */
+    public int getSalvoSize() 
+    {
+        if (!salvo) return 1;
+        return (isPlayerTurn ? playerBoard : computerBoard).getShipsAfloat();
+    }
+    /** Gets the computer's last salvo, its shots packed with Board.pack. */
+    public int[] getLastComputerSalvo() 
+    {
+        return computerSalvo == null ? new int[0] : Arrays.copyOf(computerSalvo, computerSalvoCount);
+    }
+    /** Gets each outcome of the computer's last salvo, coded as by Board.recordSalvo. */
+    int[] getLastComputerSalvoResults() 
+    {
+        return computerSalvo == null ? new int[0] : Arrays.copyOf(computerSalvoResults, computerSalvoCount);
+    }
+    /** Gets each outcome of the player's last salvo, coded as by Board.recordSalvo. */
+    int[] getLastSalvoResults() 
+    {
+        return salvoResults == null ? new int[0] : Arrays.copyOf(salvoResults, salvoCount);
+    }
     public String getWinner() 
     {
         if (playerBoard.allShipsSunk()) return "Computer";
@@ -1,38 +1,146 @@
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Random;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class manages the game grid and ship positions.
  * It handles shot recording.
  * It tracks game state.
+ * Cell state is held in bitboards: one bit per cell packed into long words,
+ * so shots and validity checks are plain bit operations. A dense cell index
+ * maps every cell to its ship, so lookups do not depend on fleet size.
+ * The fleet itself lives in parallel primitive arrays indexed by ship, and
+ * Ship objects are views onto them, so recording a shot allocates nothing.
+ * Shots can be passed around packed into one int with pack(row, col).
+ * A whole salvo can be fired with recordSalvo, which checks, applies and
+ * settles sinkings for all its shots in one pass.
+ * Boards are not thread-safe, except that once every ship is placed any number
+ * of threads may shoot through recordShotConcurrently, which is lock-free.
  */
 public class Board implements Serializable 
 {
-    private static final long serialVersionUID = 1L;
-    public static final int SIZE = 10; // 10x10 grid.
+    private static final long serialVersionUID = 4L;
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle CELLS_AFLOAT;
+    static 
+    {
+        try 
+        {
+            CELLS_AFLOAT = MethodHandles.lookup().findVarHandle(Board.class, "cellsAfloat", int.class);
+        } 
+        catch (ReflectiveOperationException e) 
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
     
-    private char[][] grid; // Game grid state.
-    private ArrayList<Ship> ships; // List of ships.
+    // Results of recordShotConcurrently other than a hit.
+    static final int SHOT_INVALID = -2; // Off the board.
+    static final int SHOT_TAKEN = -1;   // Already shot, perhaps by another thread.
+    static final int SHOT_MISS = 0;
+    public static final int DEFAULT_SIZE = 10; // 10x10 grid.
+    public static final int MAX_SIZE = 4096;   // Keeps the cell count well inside an int.
     
-     /** Initializes empty board. */
+    private final int size;  // Cells per side.
+    private final int words; // Longs per bitboard.
+    
+    private long[] occupied; // Cells covered by a ship.
+    private long[] hits;     // Shots that struck a ship.
+    private long[] misses;   // Shots that landed in water.
+    private int[] cellShip;  // Ship index + 1 for each cell, 0 for water.
+    private int cellsAfloat; // Ship cells not yet hit.
+    private transient long[] salvo; // Cells of the salvo being checked; empty between salvos.
+    
+    // The fleet, one entry per ship in placement order.
+    private int shipCount;
+    private int[] shipStart;        // Bow cell.
+    private byte[] shipType;        // Ship.Type ordinal.
+    private boolean[] shipVertical; // Runs down from the bow rather than right.
+    private int[] shipAfloat;       // Segments not yet hit.
+    private String[] shipName;
+    private Ship[] shipView;        // One view per ship, so views compare by identity.
+    
+     /** Initializes empty board of the default size. */
     public Board() 
     {
-        grid = new char[SIZE][SIZE];
-        ships = new ArrayList<>();
-        initializeGrid();
+        this(DEFAULT_SIZE);
     }
     
-    /** Fills grid with water tiles. */
-    private void initializeGrid() 
+    /**
+     * Initializes empty board.
+     * @param size Cells per side.
+     */
+    public Board(int size) 
     {
-        for (int row = 0; row < SIZE; row++) 
+        if (size < 1 || size > MAX_SIZE) 
         {
-            for (int col = 0; col < SIZE; col++) 
-            {
-                grid[row][col] = '~'; // '~' represents water.
-            }
+            throw new IllegalArgumentException("Board size out of range: " + size);
         }
+        this.size = size;
+        this.words = (size * size + 63) >>> 6;
+        occupied = new long[words];
+        hits = new long[words];
+        misses = new long[words];
+        cellShip = new int[size * size];
+        shipStart = new int[16];
+        shipType = new byte[16];
+        shipVertical = new boolean[16];
+        shipAfloat = new int[16];
+        shipName = new String[16];
+        shipView = new Ship[16];
+    }
+    
+    /** Copies a board, ships and shots included. */
+    private Board(Board other) 
+    {
+        size = other.size;
+        words = other.words;
+        occupied = other.occupied.clone();
+        hits = other.hits.clone();
+        misses = other.misses.clone();
+        cellShip = other.cellShip.clone();
+        cellsAfloat = other.cellsAfloat;
+        shipCount = other.shipCount;
+        shipStart = other.shipStart.clone();
+        shipType = other.shipType.clone();
+        shipVertical = other.shipVertical.clone();
+        shipAfloat = other.shipAfloat.clone();
+        shipName = other.shipName.clone();
+        shipView = new Ship[other.shipView.length];
+        for (int i = 0; i < shipCount; i++) shipView[i] = new Ship(this, i);
+    }
+    
+    /** Makes an independent copy, e.g. for another thread to read while this one changes. */
+    Board copy() 
+    {
+        return new Board(this);
+    }
+    
+    /** Packs a coordinate into one int; boards are at most MAX_SIZE cells per side. */
+    public static int pack(int row, int col) 
+    {
+        return row << 16 | col;
+    }
+    
+    /** Gets the row of a packed coordinate. */
+    public static int rowOf(int shot) 
+    {
+        return shot >>> 16;
+    }
+    
+    /** Gets the column of a packed coordinate. */
+    public static int colOf(int shot) 
+    {
+        return shot & 0xFFFF;
     }
     
     /**
@@ -45,32 +153,48 @@ public class Board implements Serializable
      */
     public boolean placeShip(int row, int col, Ship.Type type, String name) 
     {
-        int size = type.size;
-        boolean vertical = new Random().nextBoolean(); // Random orientation.
+        return placeShip(row, col, type, name, ThreadLocalRandom.current().nextBoolean()); // Random orientation.
+    }
+    
+    /**
+     * Places a ship on the board with a given orientation.
+     * @param vertical true to run down from the start, false to run right.
+     * @return true if placement succeeded.
+     */
+    public boolean placeShip(int row, int col, Ship.Type type, String name, boolean vertical) 
+    {
+        int length = type.size;
         
          // Validate placement bounds.
-        if (vertical && row + size > SIZE) return false;
-        if (!vertical && col + size > SIZE) return false;
+        if (row < 0 || col < 0) return false;
+        if (vertical && (row + length > size || col >= size)) return false;
+        if (!vertical && (col + length > size || row >= size)) return false;
         
         // Check for overlapping ships.
-        for (int i = 0; i < size; i++) 
+        int step = vertical ? size : 1;
+        int start = row * size + col;
+        for (int i = 0, cell = start; i < length; i++, cell += step) 
         {
-            int r = vertical ? row + i : row;
-            int c = vertical ? col : col + i;
-            if (grid[r][c] != '~') return false;
+            if (cellShip[cell] != 0) return false;
         }
         
         // Place ship segment.
-        ArrayList<int[]> segments = new ArrayList<>();
-        for (int i = 0; i < size; i++) 
+        if (shipCount == shipStart.length) growFleet();
+        int id = shipCount + 1;
+        for (int i = 0, cell = start; i < length; i++, cell += step) 
         {
-            int r = vertical ? row + i : row;
-            int c = vertical ? col : col + i;
-            grid[r][c] = type.symbol;
-            segments.add(new int[]{r, c});
+            occupied[cell >>> 6] |= 1L << cell;
+            cellShip[cell] = id;
         }
         
-        ships.add(new Ship(type, name, segments));
+        shipStart[shipCount] = start;
+        shipType[shipCount] = (byte) type.ordinal();
+        shipVertical[shipCount] = vertical;
+        shipAfloat[shipCount] = length;
+        shipName[shipCount] = name;
+        shipView[shipCount] = new Ship(this, shipCount);
+        shipCount++;
+        cellsAfloat += length;
         return true;
     }
     
@@ -83,57 +207,331 @@ public class Board implements Serializable
     {
         if (!isValidShot(row, col)) return false;
         
-        boolean hit = grid[row][col] != '~';
-        grid[row][col] = hit ? 'X' : 'O'; // 'X'=hit, 'O'=miss.
+        int cell = row * size + col;
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        if ((occupied[word] & bit) == 0) 
+        {
+            misses[word] |= bit; // Water.
+            return false;
+        }
+        hits[word] |= bit;
+        cellsAfloat--;
+        shipAfloat[cellShip[cell] - 1]--; // Damage the ship that owns this cell.
+        return true;
+    }
+    
+    /**
+     * Processes a shot that may race with shots from other threads.
+     * Each cell's shot bit is set with one atomic OR, so exactly one thread
+     * wins a cell; the ship and board counters are updated atomically, so
+     * exactly one winner sees a ship go down. No locks are taken.
+     * @return SHOT_INVALID, SHOT_TAKEN, SHOT_MISS, or for a hit
+     *         (ship index + 1) * 2, plus 1 if the hit sank the ship.
+     */
+    int recordShotConcurrently(int row, int col) 
+    {
+        if (row < 0 || row >= size || col < 0 || col >= size) return SHOT_INVALID;
+        int cell = row * size + col;
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        if ((occupied[word] & bit) == 0) // Fixed once ships are placed.
+        {
+            if (((long) LONGS.getAndBitwiseOr(misses, word, bit) & bit) != 0) return SHOT_TAKEN;
+            return SHOT_MISS;
+        }
+        if (((long) LONGS.getAndBitwiseOr(hits, word, bit) & bit) != 0) return SHOT_TAKEN;
+        CELLS_AFLOAT.getAndAdd(this, -1);
+        int ship = cellShip[cell] - 1;
+        int left = (int) INTS.getAndAdd(shipAfloat, ship, -1) - 1;
+        return (ship + 1) * 2 + (left == 0 ? 1 : 0);
+    }
+    
+    /**
+     * Fires a salvo in one pass: every shot is checked, all are applied, then
+     * which ships went down is settled once for the whole salvo. A salvo with a
+     * shot off the board, at a cell already shot, or two shots at one cell is
+     * rejected whole and changes nothing.
+     * @param shots Shots packed with pack(row, col).
+     * @param results Filled per shot, as by recordShotConcurrently: SHOT_MISS, or for
+     *        a hit (ship index + 1) * 2, plus 1 on the salvo's last hit on a ship it sank.
+     * @return the number of ships the salvo sank, or SHOT_INVALID if it was rejected.
+     */
+    int recordSalvo(int[] shots, int count, int[] results) 
+    {
+        if (salvo == null) salvo = new long[words];
+        int checked = 0;
+        for (; checked < count; checked++) 
+        {
+            int row = rowOf(shots[checked]);
+            int col = colOf(shots[checked]);
+            if (row >= size || col >= size) break;
+            int cell = row * size + col;
+            int word = cell >>> 6;
+            long bit = 1L << cell;
+            if (((hits[word] | misses[word] | salvo[word]) & bit) != 0) break;
+            salvo[word] |= bit;
+            results[checked] = cell;
+        }
+        for (int i = 0; i < checked; i++) salvo[results[i] >>> 6] = 0;
+        if (checked < count) return SHOT_INVALID;
+        
+        int afloat = cellsAfloat;
+        for (int i = 0; i < count; i++) 
+        {
+            int cell = results[i];
+            int word = cell >>> 6;
+            long bit = 1L << cell;
+            if ((occupied[word] & bit) == 0) 
+            {
+                misses[word] |= bit;
+                results[i] = SHOT_MISS;
+            } 
+            else 
+            {
+                hits[word] |= bit;
+                int ship = cellShip[cell] - 1;
+                shipAfloat[ship]--;
+                afloat--;
+                results[i] = (ship + 1) * 2;
+            }
+        }
+        cellsAfloat = afloat;
         
-        if (hit) 
+        // Walking back, the first hit on a ship now down is the one that sank it.
+        int sunk = 0;
+        for (int i = count - 1; i >= 0; i--) 
         {
-            // Find and damage the hit ship.
-            for (Ship ship : ships) 
+            int ship = results[i] / 2 - 1;
+            if (ship >= 0 && shipAfloat[ship] == 0) 
             {
-                if (ship.isAt(row, col)) 
-                {
-                    ship.recordHit(row, col);
-                    break;
-                }
+                results[i]++;
+                shipAfloat[ship] = -1; // Counted; restored below.
+                sunk++;
             }
         }
-        return hit;
+        for (int i = 0; sunk > 0 && i < count; i++) 
+        {
+            if ((results[i] & 1) != 0) shipAfloat[results[i] / 2 - 1] = 0;
+        }
+        return sunk;
     }
     
      /** This gets display state for a cell. */
     public char getCellState(int row, int col, boolean showShips) 
     {
-        if (row < 0 || row >= SIZE || col < 0 || col >= SIZE) return '~';
-        char cell = grid[row][col];
-        if (cell == 'X' || cell == 'O') return cell; // Always show shots.
-        return showShips ? cell : '~'; // Hide enemy ships during gameplay.
+        if (row < 0 || row >= size || col < 0 || col >= size) return '~';
+        int cell = row * size + col;
+        int word = cell >>> 6;
+        long bit = 1L << cell;
+        if ((hits[word] & bit) != 0) return 'X';   // Always show shots.
+        if ((misses[word] & bit) != 0) return 'O';
+        if (!showShips || cellShip[cell] == 0) return '~'; // Hide enemy ships during gameplay.
+        return TYPES[shipType[cellShip[cell] - 1]].symbol;
     }
     
     /** This checks if all ships are sunk. */
     public boolean allShipsSunk() 
     {
-        for (Ship ship : ships) 
-        {
-            if (!ship.isSunk()) return false;
-        }
-        return true;
+        return cellsAfloat == 0;
     }
     
     /** This sets ship at specific coordinates. */
     public Ship getShipAt(int row, int col) 
     {
-        for (Ship ship : ships) 
-        {
-            if (ship.isAt(row, col)) return ship;
-        }
-        return null;
+        if (row < 0 || row >= size || col < 0 || col >= size) return null;
+        int id = cellShip[row * size + col];
+        return id == 0 ? null : shipView[id - 1];
+    }
+    
+    /** Gets the placement order of the ship at a coordinate, or -1 for water. */
+    int getShipIndexAt(int row, int col) 
+    {
+        if (row < 0 || row >= size || col < 0 || col >= size) return -1;
+        return cellShip[row * size + col] - 1;
     }
     
      /** This validates if the coordinates can be shot at. */
     public boolean isValidShot(int row, int col) 
     {
-        return row >= 0 && row < SIZE && col >= 0 && col < SIZE 
-               && grid[row][col] != 'X' && grid[row][col] != 'O';
+        if (row < 0 || row >= size || col < 0 || col >= size) return false;
+        int cell = row * size + col;
+        return ((hits[cell >>> 6] | misses[cell >>> 6]) & (1L << cell)) == 0;
+    }
+    
+    /** Gets the number of cells per side. */
+    public int getSize() 
+    {
+        return size;
+    }
+    
+    /** Checks whether any shot has hit a ship yet. */
+    boolean hasHits() 
+    {
+        for (long word : hits) 
+        {
+            if (word != 0) return true;
+        }
+        return false;
+    }
+    
+    /** Gets the number of ships not yet sunk. */
+    public int getShipsAfloat() 
+    {
+        int afloat = 0;
+        for (int i = 0; i < shipCount; i++) 
+        {
+            if (shipAfloat[i] > 0) afloat++;
+        }
+        return afloat;
+    }
+    
+    /** Gets the number of ships placed. */
+    public int getShipCount() 
+    {
+        return shipCount;
+    }
+    
+    /** Gets a ship by placement order. */
+    Ship getShip(int index) 
+    {
+        return shipView[index];
+    }
+    
+    // Fleet fields behind the Ship views.
+    int shipStart(int index) 
+    {
+        return shipStart[index];
+    }
+    Ship.Type shipType(int index) 
+    {
+        return TYPES[shipType[index]];
+    }
+    boolean shipVertical(int index) 
+    {
+        return shipVertical[index];
+    }
+    int shipAfloat(int index) 
+    {
+        return shipAfloat[index];
+    }
+    String shipName(int index) 
+    {
+        return shipName[index];
+    }
+    
+    /** Doubles the fleet arrays. */
+    private void growFleet() 
+    {
+        int capacity = shipStart.length * 2;
+        shipStart = Arrays.copyOf(shipStart, capacity);
+        shipType = Arrays.copyOf(shipType, capacity);
+        shipVertical = Arrays.copyOf(shipVertical, capacity);
+        shipAfloat = Arrays.copyOf(shipAfloat, capacity);
+        shipName = Arrays.copyOf(shipName, capacity);
+        shipView = Arrays.copyOf(shipView, capacity);
+    }
+    
+    /** Gets the number of bytes writeTo will produce. */
+    int encodedSize() 
+    {
+        int bytes = 4 + 2 + 4 + shipCount * 8 + words * 16;
+        for (String name : shipNames().keySet()) 
+        {
+            bytes += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Writes the board in the save format.
+     * Layout: size, ship-name table, fixed 8-byte ship records
+     * (start cell, type, orientation, name index), then hit and miss bitboards.
+     */
+    void writeTo(ByteBuffer out) 
+    {
+        Map<String, Integer> names = shipNames();
+        out.putInt(size);
+        out.putShort((short) names.size());
+        for (String name : names.keySet()) 
+        {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) bytes.length);
+            out.put(bytes);
+        }
+        out.putInt(shipCount);
+        for (int i = 0; i < shipCount; i++) 
+        {
+            out.putInt(shipStart[i]);
+            out.put(shipType[i]);
+            out.put((byte) (shipVertical[i] ? 1 : 0));
+            out.putShort((short) (int) names.get(shipName[i]));
+        }
+        for (long word : hits) out.putLong(word);
+        for (long word : misses) out.putLong(word);
+    }
+    
+    /**
+     * Reads a board written by writeTo.
+     * @throws IOException if the data does not describe a legal board.
+     */
+    static Board readFrom(ByteBuffer in) throws IOException 
+    {
+        int size = in.getInt();
+        if (size < 1 || size > MAX_SIZE) throw new IOException("Bad board size " + size);
+        Board board = new Board(size);
+        
+        String[] names = new String[in.getShort()];
+        for (int i = 0; i < names.length; i++) 
+        {
+            byte[] bytes = new byte[in.getShort()];
+            in.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        Ship.Type[] types = Ship.Type.values();
+        int shipCount = in.getInt();
+        for (int i = 0; i < shipCount; i++) 
+        {
+            int cell = in.getInt();
+            int type = in.get();
+            boolean vertical = in.get() != 0;
+            int name = in.getShort();
+            if (cell < 0 || cell >= size * size || type < 0 || type >= types.length 
+                || name < 0 || name >= names.length 
+                || !board.placeShip(cell / size, cell % size, types[type], names[name], vertical)) 
+            {
+                throw new IOException("Bad ship record " + i);
+            }
+        }
+        
+        for (int w = 0; w < board.words; w++) board.hits[w] = in.getLong();
+        for (int w = 0; w < board.words; w++) board.misses[w] = in.getLong();
+        for (int w = 0; w < board.words; w++) 
+        {
+            if ((board.hits[w] & ~board.occupied[w]) != 0 || (board.misses[w] & board.occupied[w]) != 0) 
+            {
+                throw new IOException("Shots do not match ships");
+            }
+            // Replay the hits onto their ships.
+            for (long bits = board.hits[w]; bits != 0; bits &= bits - 1) 
+            {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                board.shipAfloat[board.cellShip[cell] - 1]--;
+                board.cellsAfloat--;
+            }
+        }
+        return board;
+    }
+    
+    /** Numbers distinct ship names in placement order, so repeated names are stored once. */
+    private Map<String, Integer> shipNames() 
+    {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (int i = 0; i < shipCount; i++) 
+        {
+            names.putIfAbsent(shipName[i], names.size());
+        }
+        return names;
     }
-}
\ No newline at end of file
+}
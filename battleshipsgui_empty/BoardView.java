@@ -0,0 +1,182 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * This class draws a whole game board as one Swing component.
+ * Cells are painted into a backing image; after a shot only the cells that
+ * changed are redrawn there, and painting just copies the clipped region
+ * of the image to the screen. Component count stays at one and a repaint
+ * costs the same whatever the board size.
+ */
+public class BoardView extends JComponent 
+{
+    private static final long serialVersionUID = 1L;
+    
+    /** Told when the user clicks a cell. */
+    public interface ClickListener 
+    {
+        void cellClicked(int row, int col);
+    }
+    
+    private static final int MAX_CELL = 50; // Pixels, for small boards.
+    private static final int FIT = 560;     // Pixels the board aims to fill.
+    private static final int TEXT_CELL = 16; // Smallest cell that shows its symbol.
+    private static final Color DISABLED = new Color(128, 128, 128, 96);
+    
+    private BattleshipsGame game;
+    private int size;
+    private int cell;           // Pixels per cell side.
+    private BufferedImage image;
+    private int[] dirty = new int[16]; // Cells to redraw before the next paint.
+    private int dirtyCount;
+    private boolean allDirty;
+    
+    /** This creates a view of the computer's board in a game. */
+    public BoardView(BattleshipsGame game, ClickListener listener) 
+    {
+        setGame(game);
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() 
+        {
+            @Override
+            public void mousePressed(MouseEvent e) 
+            {
+                int row = e.getY() / cell;
+                int col = e.getX() / cell;
+                if (isEnabled() && row < size && col < size) listener.cellClicked(row, col);
+            }
+        });
+    }
+    
+    /** Shows another game, redrawing everything. */
+    public void setGame(BattleshipsGame game) 
+    {
+        this.game = game;
+        if (game.getBoardSize() != size) 
+        {
+            size = game.getBoardSize();
+            cell = Math.max(1, Math.min(MAX_CELL, FIT / size));
+            image = null; // Rebuilt at the new size on the next paint.
+            revalidate();
+        }
+        refreshAll();
+    }
+    
+    /** Marks one cell as changed and repaints just that cell. */
+    public void cellChanged(int row, int col) 
+    {
+        if (allDirty) return;
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        dirty[dirtyCount++] = row * size + col;
+        repaint(col * cell, row * cell, cell, cell);
+    }
+    
+    /** Marks every cell as changed, e.g. after New Game or Load Game. */
+    public void refreshAll() 
+    {
+        allDirty = true;
+        dirtyCount = 0;
+        repaint();
+    }
+    
+    @Override
+    public Dimension getPreferredSize() 
+    {
+        return new Dimension(size * cell, size * cell);
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) 
+    {
+        if (image == null) 
+        {
+            image = new BufferedImage(size * cell, size * cell, BufferedImage.TYPE_INT_RGB);
+            allDirty = true;
+        }
+        Graphics2D ig = image.createGraphics();
+        try 
+        {
+            ig.setFont(getFont() != null ? getFont() : new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+            if (allDirty) 
+            {
+                for (int row = 0; row < size; row++) 
+                {
+                    for (int col = 0; col < size; col++) 
+                    {
+                        drawCell(ig, row, col);
+                    }
+                }
+            } 
+            else 
+            {
+                for (int i = 0; i < dirtyCount; i++) 
+                {
+                    drawCell(ig, dirty[i] / size, dirty[i] % size);
+                }
+            }
+        } 
+        finally 
+        {
+            ig.dispose();
+        }
+        allDirty = false;
+        dirtyCount = 0;
+        
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height); // Beyond the board.
+        int x2 = Math.min(clip.x + clip.width, image.getWidth());
+        int y2 = Math.min(clip.y + clip.height, image.getHeight());
+        if (x2 > clip.x && y2 > clip.y) 
+        {
+            g.drawImage(image, clip.x, clip.y, x2, y2, clip.x, clip.y, x2, y2, null);
+        }
+        if (!isEnabled()) 
+        {
+            g.setColor(DISABLED);
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        }
+    }
+    
+    /** Draws one cell into the backing image. */
+    private void drawCell(Graphics2D g, int row, int col) 
+    {
+        char state = game.getCellState(row, col, false);
+        int x = col * cell;
+        int y = row * cell;
+        g.setColor(getColorForState(state));
+        g.fillRect(x, y, cell, cell);
+        if (cell >= 4) 
+        {
+            g.setColor(Color.DARK_GRAY);
+            g.drawRect(x, y, cell - 1, cell - 1);
+        }
+        if (cell >= TEXT_CELL) 
+        {
+            FontMetrics metrics = g.getFontMetrics();
+            String text = String.valueOf(state);
+            g.setColor(Color.BLACK);
+            g.drawString(text, x + (cell - metrics.stringWidth(text)) / 2,
+                         y + (cell - metrics.getHeight()) / 2 + metrics.getAscent());
+        }
+    }
+    
+    /** This maps cell states to colors. */
+    static Color getColorForState(char state) 
+    {
+        return switch (state) 
+        {
+            case 'X' -> Color.RED;    // Hit
+            case 'O' -> Color.WHITE;  // Miss
+            case 'B' -> Color.YELLOW; // Battleship (view fleet)
+            case 'C' -> Color.ORANGE; // Cruiser
+            case 'D' -> Color.GRAY;   // Destroyer
+            case 'S' -> Color.PINK;   // Submarine
+            default  -> Color.BLUE;   // Water
+        };
+    }
+}
@@ -1,65 +1,194 @@
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
 
 /**
  * This class is the computer player with basic hunting AI.
  * It tracks last hit to improve targeting.
+ * The saved hunt state is guarded by this, so a save can encode it on one
+ * thread while the computer plays on another.
  */
-public class ComputerPlayer extends Player implements Serializable 
+public class ComputerPlayer extends Player implements TargetingStrategy, Serializable 
 {
     private static final long serialVersionUID = 1L;
     
-    private Random random = new Random();
-    private int lastHitRow = -1; // Last successful hit row
-    private int lastHitCol = -1; // Last successful hit column
-    private boolean isHunting = false; // Hunting mode flag
+    /** How the computer picks cells. */
+    public enum Targeting 
+    {
+        HUNT,        // Opening book or random shots, then the neighbours of the last hit.
+        DENSITY,     // Cells covered by the most possible ship placements.
+        MONTE_CARLO, // Cells filled most often in sampled fleet layouts.
+        ENDGAME      // DENSITY, then an exact search once few ships are left.
+    }
+    
+    // Neighbours tried after a hit, in order: east, south, west, north.
+    private static final int[] HUNT_ROW = {0, 1, 0, -1};
+    private static final int[] HUNT_COL = {1, 0, -1, 0};
+    
+    private Targeting targeting = Targeting.HUNT;
+    private TargetingStrategy strategy; // Used outside HUNT mode.
+    private int lastHitRow = -1; // Last successful hit row; guarded by this.
+    private int lastHitCol = -1; // Last successful hit column; guarded by this.
+    private boolean isHunting = false; // Hunting mode flag; guarded by this.
+    
+    private transient SplittableRandom shotRandom; // Split from the player's stream.
+    private transient OpeningBook book = OpeningBook.getDefault(); // May be null.
+    private transient OpeningBook.Line bookLine; // Line in use; null once left or if none.
+    private transient int bookShot = -1;         // Next shot in bookLine, -1 before the first move.
     
     public ComputerPlayer(String name, Board board, String[] shipNames) 
     {
-        super(name, board, shipNames);
+        this(name, board, shipNames, new SplittableRandom());
+    }
+    
+    /**
+     * This creates a computer player whose placement and random shots are
+     * reproducible from the stream's seed. Placement and shots draw on
+     * separate splits, so one does not shift the other.
+     * MONTE_CARLO targeting samples against the clock and is not reproducible.
+     */
+    public ComputerPlayer(String name, Board board, String[] shipNames, SplittableRandom random) 
+    {
+        super(name, board, shipNames, random);
+        shotRandom = random.split();
+    }
+    
+    /** This switches targeting mode; new modes start from the shots already on the board. */
+    public void setTargeting(Targeting targeting) 
+    {
+        this.targeting = targeting;
+        strategy = switch (targeting) 
+        {
+            case DENSITY -> new DensityTargeting();
+            case MONTE_CARLO -> new MonteCarloTargeting();
+            case ENDGAME -> new EndgameTargeting();
+            default -> null;
+        };
+    }
+    
+    public Targeting getTargeting() 
+    { 
+        return targeting; 
+    }
+    
+    /** This sets the opening book HUNT mode follows until its first hit, or null for none. */
+    public void setOpeningBook(OpeningBook book) 
+    {
+        this.book = book;
+        bookLine = null;
+        bookShot = -1;
     }
     
      /**
      * Generates computer's move
      * - Hunts adjacent cells after hits
+     * - Opening book shots until the first hit, if there is a book
      * - Random shots otherwise
+     * - Or defers to the strategy for DENSITY, MONTE_CARLO and ENDGAME modes
+     * @return the shot, packed with Board.pack.
      */
-    public int[] makeMove(Board opponentBoard) 
+    public int nextShot(Board opponentBoard) 
+    {
+        long started = GameMetrics.start();
+        int shot = chooseShot(opponentBoard);
+        GameMetrics.MOVE.record(started);
+        return shot;
+    }
+    
+    private int chooseShot(Board opponentBoard) 
     {
+        if (strategy != null) return strategy.nextShot(opponentBoard);
+        
         // Hunt adjacent cells if in hunting mode.
-        if (isHunting && lastHitRow != -1) 
+        synchronized (this) 
         {
-            int[][] directions = {{0,1},{1,0},{0,-1},{-1,0}}; // N,E,S,W
-            for (int[] dir : directions) 
+            if (isHunting && lastHitRow != -1) 
             {
-                int newRow = lastHitRow + dir[0];
-                int newCol = lastHitCol + dir[1];
-                if (opponentBoard.isValidShot(newRow, newCol)) 
+                for (int dir = 0; dir < HUNT_ROW.length; dir++) 
                 {
-                    return new int[]{newRow, newCol};
+                    int newRow = lastHitRow + HUNT_ROW[dir];
+                    int newCol = lastHitCol + HUNT_COL[dir];
+                    if (opponentBoard.isValidShot(newRow, newCol)) 
+                    {
+                        return Board.pack(newRow, newCol);
+                    }
                 }
+                isHunting = false;  // Exit hunting if no valid adjacent shots.
             }
-            isHunting = false;  // Exit hunting if no valid adjacent shots.
         }
+        int opening = openingShot(opponentBoard);
+        if (opening >= 0) return opening;
+        
         // Default to random valid shot.
         int row, col;
         do 
         {
-            row = random.nextInt(Board.SIZE);
-            col = random.nextInt(Board.SIZE);
+            row = shotRandom.nextInt(opponentBoard.getSize());
+            col = shotRandom.nextInt(opponentBoard.getSize());
         } while (!opponentBoard.isValidShot(row, col));
         
-        return new int[]{row, col};
+        return Board.pack(row, col);
     }
+    
+    /**
+     * Gets the next opening book shot.
+     * The book's lines assume every earlier shot missed, so a line is only
+     * followed from the first move of a game and dropped at the first hit.
+     * @return the shot, or -1 when out of book.
+     */
+    private int openingShot(Board opponentBoard) 
+    {
+        if (bookShot < 0) 
+        {
+            bookShot = 0;
+            if (book != null && !opponentBoard.hasHits()) bookLine = book.find(opponentBoard.getSize(), FLEET);
+        }
+        while (bookLine != null && bookShot < bookLine.getDepth()) 
+        {
+            int shot = bookLine.getShot(bookShot++);
+            if (opponentBoard.isValidShot(Board.rowOf(shot), Board.colOf(shot))) return shot;
+        }
+        bookLine = null;
+        return -1;
+    }
+    
     /** Updates AI state after each shot */
     public void recordShotResult(int row, int col, boolean wasHit) 
     {
+        if (strategy != null) strategy.recordShotResult(row, col, wasHit);
         if (wasHit) 
         {
-            lastHitRow = row;
-            lastHitCol = col;
-            isHunting = true; // Enter hunting mode after hit.
-
+            bookLine = null; // Out of book.
+            synchronized (this) 
+            {
+                lastHitRow = row;
+                lastHitCol = col;
+                isHunting = true; // Enter hunting mode after hit.
+            }
         }
     }
-}
\ No newline at end of file
+    
+    /** Bytes written by writeState. */
+    static final int STATE_BYTES = 10;
+    
+    /** Writes targeting mode and hunt state; other modes rebuild from the board. */
+    synchronized void writeState(ByteBuffer out) 
+    {
+        out.put((byte) targeting.ordinal());
+        out.putInt(lastHitRow);
+        out.putInt(lastHitCol);
+        out.put((byte) (isHunting ? 1 : 0));
+    }
+    
+    /** Reads state written by writeState. */
+    synchronized void readState(ByteBuffer in) throws IOException 
+    {
+        int mode = in.get();
+        if (mode < 0 || mode >= Targeting.values().length) throw new IOException("Bad targeting mode " + mode);
+        setTargeting(Targeting.values()[mode]);
+        lastHitRow = in.getInt();
+        lastHitCol = in.getInt();
+        isHunting = in.get() != 0;
+    }
+}
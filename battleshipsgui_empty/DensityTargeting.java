@@ -0,0 +1,362 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class targets the cells most likely to hold a ship.
+ * It keeps a density map: for every cell, the number of ways a remaining ship
+ * could still lie across it. A miss only invalidates placements that cover the
+ * missed cell, so the map is patched locally in recordShotResult rather than
+ * recomputed. A max segment tree over the map makes picking the best cell a
+ * walk from the root, so a move costs O(log cells) whatever the board size.
+ * While there are hits on ships not yet sunk, placements through those hits
+ * are scored instead so the ship is finished off first. Which hits a sunk ship
+ * covered is worked out by KnownHits from the announced sinkings alone.
+ */
+public class DensityTargeting implements TargetingStrategy, Serializable 
+{
+    private static final long serialVersionUID = 1L;
+    
+    private final int[] fleetCounts; // Ships still afloat, indexed by length.
+    
+    private int size;       // Cells per side, set on the first move.
+    private int[] density;  // Valid placements covering each cell.
+    private long[] blocked; // Misses and cells of sunk ships.
+    private int[] tree;     // Max segment tree over density; shot cells hold -1.
+    private int leaves;     // First leaf index in tree.
+    
+    private KnownHits known;
+    private int[] openHits;  // Hit cells whose ship is not yet known to be sunk.
+    private int openHitCount;
+    private int lastShot = -1;
+    private boolean lastShotHit;
+    private int[] scores;    // Scratch scores for target mode, kept zeroed.
+    private int[] scored;    // Cells touched in scores.
+    
+    /** This creates a strategy expecting the standard fleet. */
+    public DensityTargeting() 
+    {
+        this(Player.FLEET);
+    }
+    
+    /**
+     * This creates a strategy expecting a given fleet.
+     * @param fleet One entry per opposing ship.
+     */
+    public DensityTargeting(Ship.Type[] fleet) 
+    {
+        int longest = 0;
+        for (Ship.Type type : fleet) 
+        {
+            longest = Math.max(longest, type.size);
+        }
+        fleetCounts = new int[longest + 1];
+        for (Ship.Type type : fleet) 
+        {
+            fleetCounts[type.size]++;
+        }
+    }
+    
+    @Override
+    public int nextShot(Board opponentBoard) 
+    {
+        observe(opponentBoard);
+        int cell = openHitCount > 0 ? bestTargetCell() : -1;
+        if (cell < 0) cell = bestDensityCell();
+        if (cell < 0) 
+        {
+            // Every placement ruled out: the fleet differs from what we expected.
+            cell = firstOpenCell(opponentBoard);
+        }
+        return Board.pack(cell / size, cell % size);
+    }
+    
+    @Override
+    public void recordShotResult(int row, int col, boolean wasHit) 
+    {
+        if (density == null) return; // Picked up from the board on the first move.
+        int cell = row * size + col;
+        setLeaf(cell, -1);
+        lastShot = cell;
+        lastShotHit = wasHit;
+        if (wasHit) 
+        {
+            known.hit(cell);
+            openHits[openHitCount++] = cell;
+        } 
+        else 
+        {
+            block(cell);
+        }
+    }
+    
+    /** Brings the map up to date with the board: read on first use, then told of each sinking. */
+    void observe(Board opponentBoard) 
+    {
+        if (density == null) initialize(opponentBoard);
+        if (lastShotHit) checkSunk(opponentBoard);
+    }
+    
+    /** Gets what is known about the hits so far; up to date after observe. */
+    KnownHits getKnownHits() 
+    {
+        return known;
+    }
+    
+    /** Builds the map for this board, taking in any shots already on it. */
+    private void initialize(Board board) 
+    {
+        size = board.getSize();
+        int cells = size * size;
+        density = new int[cells];
+        blocked = new long[(cells + 63) >>> 6];
+        openHits = new int[cells];
+        scores = new int[cells];
+        scored = new int[cells];
+        for (int length = 1; length < fleetCounts.length; length++) 
+        {
+            if (fleetCounts[length] > 0) addPlacements(length);
+        }
+        
+        leaves = Integer.highestOneBit(Math.max(1, cells - 1)) << 1;
+        tree = new int[leaves * 2];
+        Arrays.fill(tree, -1);
+        for (int cell = 0; cell < cells; cell++) 
+        {
+            if (board.isValidShot(cell / size, cell % size)) tree[leaves + cell] = density[cell];
+        }
+        rebuildTree();
+        
+        known = KnownHits.fromBoard(board);
+        for (int cell = 0; cell < cells; cell++) 
+        {
+            if (board.getCellState(cell / size, cell % size, false) == 'O') block(cell);
+            else if (known.isHit(cell) && !known.isSunk(cell)) openHits[openHitCount++] = cell;
+        }
+        for (int i = 0; i < known.getSunkCount(); i++) 
+        {
+            sinkShip(known.getSunkType(i).size);
+        }
+        for (int cell = 0; cell < cells; cell++) 
+        {
+            if (known.isSunk(cell)) block(cell);
+        }
+    }
+    
+    /** Adds every currently valid placement of a length to the map. */
+    private void addPlacements(int length) 
+    {
+        forEachValidPlacement(length, 1);
+    }
+    
+    /** Removes every currently valid placement of a length from the map. */
+    private void removePlacements(int length) 
+    {
+        forEachValidPlacement(length, -1);
+    }
+    
+    private void forEachValidPlacement(int length, int delta) 
+    {
+        for (int vertical = 0; vertical < (length == 1 ? 1 : 2); vertical++) 
+        {
+            int step = vertical == 1 ? size : 1;
+            for (int line = 0; line < size; line++) 
+            {
+                int first = vertical == 1 ? line : line * size;
+                int run = 0; // Unblocked cells ending at pos.
+                for (int pos = 0; pos < size; pos++) 
+                {
+                    int cell = first + pos * step;
+                    run = isBlocked(cell) ? 0 : run + 1;
+                    if (run < length) continue;
+                    for (int i = 0; i < length; i++) 
+                    {
+                        density[cell - i * step] += delta;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Marks a cell as unable to hold a ship and drops every placement through it.
+     * Only placements within one ship length of the cell are touched.
+     */
+    private void block(int cell) 
+    {
+        if (isBlocked(cell)) return;
+        int row = cell / size;
+        int col = cell % size;
+        for (int length = 1; length < fleetCounts.length; length++) 
+        {
+            if (fleetCounts[length] == 0) continue;
+            dropPlacements(cell, col, length, 1);
+            if (length > 1) dropPlacements(cell, row, length, size);
+        }
+        blocked[cell >>> 6] |= 1L << cell;
+    }
+    
+    /** Drops the valid placements of one length and direction that cover a cell. */
+    private void dropPlacements(int cell, int pos, int length, int step) 
+    {
+        int lowest = Math.max(0, pos - length + 1);
+        int highest = Math.min(pos, size - length);
+        for (int start = lowest; start <= highest; start++) 
+        {
+            int first = cell - (pos - start) * step;
+            if (!isClear(first, length, step)) continue;
+            for (int i = 0; i < length; i++) 
+            {
+                int covered = first + i * step;
+                density[covered]--;
+                if (tree[leaves + covered] >= 0) setLeaf(covered, density[covered]);
+            }
+        }
+    }
+    
+    /**
+     * If the last shot sank a ship, takes it out of the expected fleet and
+     * blocks every hit now known to have been on a sunk ship.
+     */
+    private void checkSunk(Board board) 
+    {
+        lastShotHit = false;
+        Ship.Type type = KnownHits.sunkBy(board, lastShot);
+        if (type == null) return;
+        known.sunk(lastShot, type);
+        
+        int kept = 0;
+        for (int i = 0; i < openHitCount; i++) 
+        {
+            int hit = openHits[i];
+            if (known.isSunk(hit)) block(hit);
+            else openHits[kept++] = hit;
+        }
+        openHitCount = kept;
+        sinkShip(type.size);
+    }
+    
+    /** Takes a sunk ship out of the expected fleet, dropping its length once none are left. */
+    private void sinkShip(int length) 
+    {
+        if (length < fleetCounts.length && fleetCounts[length] > 0 && --fleetCounts[length] == 0) 
+        {
+            removePlacements(length);
+            for (int c = 0; c < density.length; c++) 
+            {
+                if (tree[leaves + c] >= 0) tree[leaves + c] = density[c];
+            }
+            rebuildTree();
+        }
+    }
+    
+    /**
+     * Scores open cells by how many valid placements join them to open hits.
+     * @return best cell, or -1 if no placement fits.
+     */
+    private int bestTargetCell() 
+    {
+        int touched = 0;
+        for (int h = 0; h < openHitCount; h++) 
+        {
+            int hit = openHits[h];
+            int row = hit / size;
+            int col = hit % size;
+            for (int length = 2; length < fleetCounts.length; length++) 
+            {
+                if (fleetCounts[length] == 0) continue;
+                touched = scoreLine(hit, col, length, 1, touched);
+                touched = scoreLine(hit, row, length, size, touched);
+            }
+        }
+        
+        int best = -1;
+        for (int i = 0; i < touched; i++) 
+        {
+            int cell = scored[i];
+            if (best < 0 || scores[cell] > scores[best]
+                || (scores[cell] == scores[best] && density[cell] > density[best])) 
+            {
+                best = cell;
+            }
+        }
+        for (int i = 0; i < touched; i++) 
+        {
+            scores[scored[i]] = 0;
+        }
+        return best;
+    }
+    
+    private int scoreLine(int hit, int pos, int length, int step, int touched) 
+    {
+        int lowest = Math.max(0, pos - length + 1);
+        int highest = Math.min(pos, size - length);
+        for (int start = lowest; start <= highest; start++) 
+        {
+            int first = hit - (pos - start) * step;
+            if (!isClear(first, length, step)) continue;
+            for (int i = 0; i < length; i++) 
+            {
+                int cell = first + i * step;
+                if (tree[leaves + cell] < 0) continue; // Already shot.
+                if (scores[cell] == 0) scored[touched++] = cell;
+                scores[cell]++;
+            }
+        }
+        return touched;
+    }
+    
+    /** Walks the tree from the root to the highest-density open cell, or -1. */
+    private int bestDensityCell() 
+    {
+        if (tree[1] < 0) return -1;
+        int node = 1;
+        while (node < leaves) 
+        {
+            node = tree[2 * node] == tree[node] ? 2 * node : 2 * node + 1;
+        }
+        return node - leaves;
+    }
+    
+    private int firstOpenCell(Board board) 
+    {
+        for (int cell = 0; cell < density.length; cell++) 
+        {
+            if (board.isValidShot(cell / size, cell % size)) return cell;
+        }
+        throw new IllegalStateException("No open cells left");
+    }
+    
+    private boolean isClear(int first, int length, int step) 
+    {
+        for (int i = 0; i < length; i++) 
+        {
+            if (isBlocked(first + i * step)) return false;
+        }
+        return true;
+    }
+    
+    private boolean isBlocked(int cell) 
+    {
+        return (blocked[cell >>> 6] & (1L << cell)) != 0;
+    }
+    
+    private void setLeaf(int cell, int value) 
+    {
+        int node = leaves + cell;
+        tree[node] = value;
+        for (node >>>= 1; node > 0; node >>>= 1) 
+        {
+            int max = Math.max(tree[2 * node], tree[2 * node + 1]);
+            if (tree[node] == max) break;
+            tree[node] = max;
+        }
+    }
+    
+    private void rebuildTree() 
+    {
+        for (int node = leaves - 1; node > 0; node--) 
+        {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+}
@@ -0,0 +1,633 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class plays the end of a game exactly.
+ * Until few ships are left it shoots like DensityTargeting. Once at most
+ * ENDGAME_SHIPS are afloat and every layout of them consistent with the board
+ * can be listed, it searches those layouts for the shot that finishes the
+ * fleet in the fewest expected shots, counting each layout as equally likely.
+ * A shot's outcome is a miss, a hit, the sinking of a given type, or the end
+ * of the game, and the layouts left after each outcome form the next position.
+ * Layouts are listed from what a player knows: misses, hits, and the ships
+ * announced sunk, whose cells KnownHits works out from the outcomes alone.
+ *
+ * Positions are named by Zobrist hashes of the outcomes seen since the layouts
+ * were listed, updated one shot at a time, and solved positions go into a
+ * bounded transposition table. Each (cell, outcome) key is hashed when needed
+ * rather than kept in a table the size of the board. The same position reached by shots in another
+ * order is solved once, and what one move solved is reused by the next.
+ * Each move's search has a work budget; if it runs out, that move falls back
+ * to the density map and the next move picks up the table where it left off.
+ */
+public class EndgameTargeting implements TargetingStrategy, Serializable 
+{
+    private static final long serialVersionUID = 1L;
+    
+    public static final int ENDGAME_SHIPS = 2;
+    public static final int MAX_LAYOUTS = 128;
+    private static final int MAX_ENUMERATION = 1 << 20; // Placement tries while listing layouts.
+    private static final long WORK_PER_MOVE = 250_000; // Layouts and cells visited per move.
+    private static final int TABLE_BITS = 16;
+    private static final double EPSILON = 1e-9; // Values this close count as ties.
+    
+    // Outcomes of a shot; SUNK + type ordinal for a sinking.
+    private static final int MISS = 0;
+    private static final int HIT = 1;
+    private static final int FINISHED = 2;
+    private static final int SUNK = 3;
+    private static final int OUTCOMES = SUNK + Ship.Type.values().length;
+    
+    private static final long ROOT_HASH = 0x9E3779B97F4A7C15L; // Never 0, which marks empty table slots.
+    
+    private final Ship.Type[] fleet;
+    private final DensityTargeting fallback;
+    
+    private int size;
+    private int words;
+    private int lastShot = -1;
+    private boolean lastShotHit;
+    private transient int unlistedAt; // Hits + sinkings + 1 when listing last failed; 0 if it has not.
+    
+    // Listed layouts: ship k of layout i starts at layoutStart[i * ships + k].
+    private transient int layoutCount;
+    private transient int ships;
+    private transient Ship.Type[] shipTypes;
+    private transient int[] layoutStart;
+    private transient boolean[] layoutVertical;
+    private transient long[] layoutMask; // Cells of layout i from i * words.
+    
+    private transient int[] stack;   // Layout numbers; the live ones are stack[0, rootCount).
+    private transient byte[] codes;  // Outcome of the candidate shot, by stack slot.
+    private transient int rootCount;
+    private transient int free;      // First stack slot not holding a position's layouts.
+    private transient long rootHash;
+    private transient long[] hits;   // Hit cells in the position being searched.
+    private transient int[][] counts;     // Per depth: layouts still to hit each cell.
+    private transient int[][] candidates; // Per depth: cells worth a shot, best bound first.
+    private transient int[][] groups;     // Per depth: size, start and fill slot of each outcome.
+    private transient Table table;
+    private transient long work;
+    private transient boolean aborted;
+    
+    /** This creates a strategy expecting the standard fleet. */
+    public EndgameTargeting() 
+    {
+        this(Player.FLEET);
+    }
+    
+    /**
+     * This creates a strategy expecting a given fleet.
+     * @param fleet One entry per opposing ship.
+     */
+    public EndgameTargeting(Ship.Type[] fleet) 
+    {
+        this.fleet = fleet.clone();
+        this.fallback = new DensityTargeting(fleet);
+    }
+    
+    @Override
+    public int nextShot(Board opponentBoard) 
+    {
+        int fallbackShot = fallback.nextShot(opponentBoard); // Keeps its map in step.
+        if (size == 0) 
+        {
+            size = opponentBoard.getSize();
+            words = (size * size + 63) >>> 6;
+        }
+        if (layoutStart != null && lastShot >= 0) observe(opponentBoard);
+        lastShot = -1;
+        if (layoutStart == null && !tryList(opponentBoard)) return fallbackShot;
+        
+        work = 0;
+        aborted = false;
+        free = rootCount;
+        solve(0, rootCount, rootHash, 0, Double.MAX_VALUE);
+        int slot = aborted ? -1 : table.find(rootHash);
+        int best = slot >= 0 ? table.cells[slot] : -1;
+        return best >= 0 ? Board.pack(best / size, best % size) : fallbackShot;
+    }
+    
+    @Override
+    public void recordShotResult(int row, int col, boolean wasHit) 
+    {
+        fallback.recordShotResult(row, col, wasHit);
+        if (size == 0) return;
+        lastShot = row * size + col;
+        lastShotHit = wasHit;
+    }
+    
+    /** Checks whether the endgame search is in use. */
+    public boolean isSolving() 
+    {
+        return layoutStart != null;
+    }
+    
+    /** Keeps the live layouts that agree with the last shot's outcome and moves the root hash on. */
+    private void observe(Board board) 
+    {
+        int cell = lastShot;
+        int outcome = MISS;
+        if (lastShotHit) 
+        {
+            Ship.Type sunk = KnownHits.sunkBy(board, cell);
+            outcome = sunk == null ? HIT : board.allShipsSunk() ? FINISHED : SUNK + sunk.ordinal();
+        }
+        int kept = 0;
+        for (int i = 0; i < rootCount; i++) 
+        {
+            if (outcome(stack[i], cell) == outcome) stack[kept++] = stack[i];
+        }
+        rootCount = kept;
+        rootHash ^= key(cell, outcome);
+        if (lastShotHit) hits[cell >>> 6] |= 1L << cell;
+        if (rootCount == 0) layoutStart = null; // The board fits none of them; list again.
+    }
+    
+    /**
+     * Lists the layouts if few enough ships are afloat, which is read from the
+     * announced sinkings without looking at the board. After a failed listing
+     * it only tries again once a hit or sinking has changed the position, so
+     * an open board with too many layouts is not scanned every move.
+     */
+    private boolean tryList(Board board) 
+    {
+        KnownHits known = fallback.getKnownHits();
+        int afloat = fleet.length - known.getSunkCount();
+        if (afloat <= 0 || afloat > ENDGAME_SHIPS) return false;
+        int position = known.getHitCount() + known.getSunkCount() + 1;
+        if (position == unlistedAt) return false;
+        if (list(board, known)) return true;
+        unlistedAt = position;
+        return false;
+    }
+    
+    /**
+     * Lists every layout of the ships afloat that fits what is known of the board.
+     * Hits that may be on a sunk ship may be covered or not.
+     * @return false if too many ships are afloat or there are too many layouts.
+     */
+    private boolean list(Board board, KnownHits known) 
+    {
+        int cells = size * size;
+        int[] afloat = new int[Ship.Type.values().length];
+        for (Ship.Type type : fleet) 
+        {
+            afloat[type.ordinal()]++;
+        }
+        for (int i = 0; i < known.getSunkCount(); i++) 
+        {
+            int type = known.getSunkType(i).ordinal();
+            if (afloat[type] > 0) afloat[type]--;
+        }
+        int count = 0;
+        for (int n : afloat) 
+        {
+            count += n;
+        }
+        if (count == 0 || count > ENDGAME_SHIPS) return false;
+        
+        long[] blocked = new long[words]; // Misses and cells of sunk ships.
+        long[] open = new long[words];    // Hits that ships afloat must cover.
+        long[] hit = new long[words];
+        for (int cell = 0; cell < cells; cell++) 
+        {
+            if (board.getCellState(cell / size, cell % size, false) == 'O' || known.isSunk(cell)) 
+            {
+                blocked[cell >>> 6] |= 1L << cell;
+            }
+            if (known.isOpen(cell)) open[cell >>> 6] |= 1L << cell;
+            if (known.isHit(cell)) hit[cell >>> 6] |= 1L << cell;
+        }
+        
+        // Longest first, as Ship.Type is ordered; equal types are placed in increasing order.
+        Ship.Type[] types = new Ship.Type[count];
+        for (int t = 0, k = 0; t < afloat.length; t++) 
+        {
+            for (int i = 0; i < afloat[t]; i++) types[k++] = Ship.Type.values()[t];
+        }
+        Lister lister = new Lister(types, blocked, open, hit);
+        if (!lister.place(0, 0)) return false;
+        
+        ships = count;
+        shipTypes = types;
+        layoutCount = lister.found;
+        layoutStart = Arrays.copyOf(lister.starts, layoutCount * ships);
+        layoutVertical = Arrays.copyOf(lister.verticals, layoutCount * ships);
+        layoutMask = new long[layoutCount * words];
+        for (int i = 0; i < layoutCount; i++) 
+        {
+            for (int k = 0; k < ships; k++) 
+            {
+                int step = layoutVertical[i * ships + k] ? size : 1;
+                for (int j = 0, cell = layoutStart[i * ships + k]; j < types[k].size; j++, cell += step) 
+                {
+                    layoutMask[i * words + (cell >>> 6)] |= 1L << cell;
+                }
+            }
+        }
+        stack = new int[Math.max(64, layoutCount * 4)];
+        codes = new byte[stack.length];
+        for (int i = 0; i < layoutCount; i++) stack[i] = i;
+        rootCount = layoutCount;
+        rootHash = ROOT_HASH;
+        hits = hit;
+        if (table == null) 
+        {
+            counts = new int[cells + 1][];
+            candidates = new int[cells + 1][];
+            groups = new int[cells + 1][];
+            table = new Table(TABLE_BITS);
+        }
+        table.clear();
+        return true;
+    }
+    
+    /**
+     * Works out the expected shots to finish from a position, storing it with
+     * the best shot in the table. Nothing is stored once the work budget runs out.
+     * @param from First stack slot of the position's layouts; slots from free up are scratch.
+     * @param n Number of layouts.
+     * @param beta Only values below this are needed.
+     * @return the exact value if below beta, otherwise a lower bound of at least beta.
+     */
+    private double solve(int from, int n, long hash, int depth, double beta) 
+    {
+        int slot = table.find(hash);
+        if (slot >= 0 && (table.exact[slot] || table.values[slot] >= beta)) return table.values[slot];
+        
+        if (counts[depth] == null) 
+        {
+            counts[depth] = new int[size * size]; // Kept zeroed between uses.
+            candidates[depth] = new int[size * size];
+        }
+        int[] count = counts[depth];
+        int[] order = candidates[depth];
+        int m = 0;    // Cells touched.
+        int left = 0; // Unhit ship cells summed over the layouts.
+        for (int i = from; i < from + n; i++) 
+        {
+            int base = stack[i] * words;
+            for (int w = 0; w < words; w++) 
+            {
+                long bits = layoutMask[base + w] & ~hits[w];
+                while (bits != 0) 
+                {
+                    int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (count[cell]++ == 0) order[m++] = cell;
+                    left++;
+                    bits &= bits - 1;
+                }
+            }
+        }
+        work += n + m;
+        if (left == 0) return 0;
+        if (n == 1) 
+        {
+            // Known layout: shoot its cells in any order.
+            table.store(hash, left, true, order[0]);
+            clear(count, order, m);
+            return left;
+        }
+        
+        // After a shot at a cell, each layout still needs its other unhit cells
+        // shot, so 1 + (left - count) / n is a lower bound. Taking cells in
+        // order of that bound lets the search stop at the first that cannot win.
+        int touched = m;
+        for (int c = 1; c < m; c++) 
+        {
+            int cell = order[c];
+            int j = c;
+            while (j > 0 && count[order[j - 1]] < count[cell]) 
+            {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = cell;
+        }
+        // Every layout needs a cell they all share, and shooting it first only adds information.
+        if (count[order[0]] == n) m = 1;
+        // Each layout needs its unhit cells shot. On top of that, no cell is in
+        // more than k layouts, here or in any later position, so every shot
+        // misses all but k of the layouts still live: n - k, then n - 2k and
+        // so on. No search can beat that, and with one ship left it is exact.
+        int k = count[order[0]];
+        long rounds = (n - 1) / k;
+        double bound = (left + rounds * n - k * rounds * (rounds + 1) / 2) / (double) n;
+        if (bound >= beta - EPSILON) 
+        {
+            clear(count, order, touched);
+            table.store(hash, beta, false, order[0]);
+            return beta;
+        }
+        
+        double best = Double.MAX_VALUE;
+        int bestCell = order[0];
+        for (int c = 0; c < m && !aborted; c++) 
+        {
+            int cell = order[c];
+            double limit = Math.min(best, beta);
+            if (1 + (double) (left - count[cell]) / n >= limit) break;
+            double cutoff = limit - 1;
+            double after = expectedAfter(from, n, hash, depth, cell, cutoff);
+            if (after < cutoff) 
+            {
+                best = 1 + after;
+                bestCell = cell;
+            }
+        }
+        clear(count, order, touched);
+        if (aborted) return 0;
+        if (best >= beta) 
+        {
+            // Every shot was shown to cost at least beta, and no more is known.
+            table.store(hash, beta, false, bestCell);
+            return beta;
+        }
+        table.store(hash, best, true, bestCell);
+        return best;
+    }
+    
+    private static void clear(int[] count, int[] cells, int m) 
+    {
+        for (int i = 0; i < m; i++) 
+        {
+            count[cells[i]] = 0;
+        }
+    }
+    
+    /**
+     * Works out the expected shots still needed after a shot at a cell.
+     * Outcomes not yet solved count at their lower bound, so the work stops
+     * as soon as the total is sure to reach the cutoff.
+     * @return the exact value if below cutoff, otherwise a lower bound of at least cutoff.
+     */
+    private double expectedAfter(int from, int n, long hash, int depth, int cell, double cutoff) 
+    {
+        work += n;
+        if (work > WORK_PER_MOVE) 
+        {
+            aborted = true;
+            return 0;
+        }
+        int top = free;
+        if (stack.length < top + n) 
+        {
+            stack = Arrays.copyOf(stack, (top + n) * 2);
+            codes = Arrays.copyOf(codes, stack.length);
+        }
+        free = top + n; // The groups' own positions go above all of them.
+        if (groups[depth] == null) groups[depth] = new int[OUTCOMES * 4];
+        int[] group = groups[depth]; // Sizes, starts, fill slots, then unhit cells left.
+        Arrays.fill(group, 0, OUTCOMES, 0);
+        Arrays.fill(group, 3 * OUTCOMES, 4 * OUTCOMES, 0);
+        double rest = 0; // Lower bound of what is still to solve, times n.
+        for (int i = from; i < from + n; i++) 
+        {
+            int outcome = outcome(stack[i], cell);
+            codes[i] = (byte) outcome;
+            group[outcome]++;
+            int unhit = unhit(stack[i]) - (outcome == MISS ? 0 : 1);
+            group[3 * OUTCOMES + outcome] += unhit;
+            rest += unhit;
+        }
+        for (int o = 0, at = top; o < OUTCOMES; o++) 
+        {
+            group[OUTCOMES + o] = at;
+            group[2 * OUTCOMES + o] = at;
+            at += group[o];
+        }
+        for (int i = from; i < from + n; i++) 
+        {
+            stack[group[2 * OUTCOMES + codes[i]]++] = stack[i];
+        }
+        
+        double total = 0; // Solved outcomes, times n.
+        for (int o = 0; o < OUTCOMES && !aborted; o++) 
+        {
+            int size = group[o];
+            if (size == 0) continue;
+            rest -= group[3 * OUTCOMES + o];
+            double beta = (cutoff * n - total - rest) / size;
+            boolean hit = o != MISS;
+            if (hit) hits[cell >>> 6] |= 1L << cell;
+            double value = solve(group[OUTCOMES + o], size, hash ^ key(cell, o), depth + 1, beta);
+            if (hit) hits[cell >>> 6] &= ~(1L << cell);
+            total += value * size;
+            if (value >= beta) 
+            {
+                free = top;
+                return Math.max(cutoff, (total + rest) / n);
+            }
+        }
+        free = top;
+        return total / n;
+    }
+    
+    /**
+     * Gets the Zobrist key of an outcome at a cell: SplitMix64 of its index,
+     * which is one-to-one, so keys only repeat if the index does.
+     */
+    private static long key(int cell, int outcome) 
+    {
+        long z = (cell * (long) OUTCOMES + outcome + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /** Counts a layout's ship cells not yet hit. */
+    private int unhit(int layout) 
+    {
+        int unhit = 0;
+        for (int w = 0; w < words; w++) 
+        {
+            unhit += Long.bitCount(layoutMask[layout * words + w] & ~hits[w]);
+        }
+        return unhit;
+    }
+    
+    /** Gets the outcome of a shot at a cell if a layout were the real one, given the hits so far. */
+    private int outcome(int layout, int cell) 
+    {
+        int base = layout * words;
+        if ((layoutMask[base + (cell >>> 6)] & (1L << cell)) == 0) return MISS;
+        int row = cell / size;
+        int col = cell % size;
+        for (int k = 0; k < ships; k++) 
+        {
+            int start = layoutStart[layout * ships + k];
+            int length = shipTypes[k].size;
+            boolean vertical = layoutVertical[layout * ships + k];
+            int pos = vertical ? row - start / size : col - start % size;
+            if ((vertical ? col != start % size : row != start / size) || pos < 0 || pos >= length) continue;
+            int step = vertical ? size : 1;
+            for (int j = 0, c = start; j < length; j++, c += step) 
+            {
+                if (c != cell && (hits[c >>> 6] & (1L << c)) == 0) return HIT;
+            }
+            for (int w = 0; w < words; w++) 
+            {
+                long unhit = layoutMask[base + w] & ~hits[w];
+                if (w == cell >>> 6) unhit &= ~(1L << cell);
+                if (unhit != 0) return SUNK + shipTypes[k].ordinal();
+            }
+            return FINISHED;
+        }
+        throw new IllegalStateException("Layout mask and ships disagree");
+    }
+    
+    /** Depth-first listing of layouts, giving up past the limits. */
+    private class Lister 
+    {
+        private final Ship.Type[] types;
+        private final long[] blocked;
+        private final long[] open;
+        private final long[] hit;
+        private final long[] taken = new long[words];
+        private final int[] current;
+        private final boolean[] currentVertical;
+        int[] starts = new int[64];
+        boolean[] verticals = new boolean[64];
+        int found;
+        private int tries;
+        
+        Lister(Ship.Type[] types, long[] blocked, long[] open, long[] hit) 
+        {
+            this.types = types;
+            this.blocked = blocked;
+            this.open = open;
+            this.hit = hit;
+            current = new int[types.length];
+            currentVertical = new boolean[types.length];
+        }
+        
+        /**
+         * Places ship k and those after it.
+         * @param first Lowest placement number allowed, so equal types are not listed twice over.
+         * @return false once a limit is passed.
+         */
+        boolean place(int k, int first) 
+        {
+            if (k == types.length) return record();
+            int length = types[k].size;
+            int placements = size * size * 2;
+            for (int p = first; p < placements; p++) 
+            {
+                if (++tries > MAX_ENUMERATION) return false;
+                int start = p >>> 1;
+                boolean vertical = (p & 1) == 1;
+                if (vertical && length == 1) continue; // Same as horizontal.
+                if (!fits(start, length, vertical)) continue;
+                mark(start, length, vertical, true);
+                current[k] = start;
+                currentVertical[k] = vertical;
+                boolean sameNext = k + 1 < types.length && types[k + 1] == types[k];
+                boolean ok = place(k + 1, sameNext ? p + 1 : 0);
+                mark(start, length, vertical, false);
+                if (!ok) return false;
+            }
+            return true;
+        }
+        
+        /** Keeps the current layout if it covers every open hit and leaves no ship wholly hit. */
+        private boolean record() 
+        {
+            for (int w = 0; w < words; w++) 
+            {
+                if ((open[w] & ~taken[w]) != 0) return true;
+            }
+            for (int k = 0; k < types.length; k++) 
+            {
+                int step = currentVertical[k] ? size : 1;
+                boolean whole = true;
+                for (int j = 0, c = current[k]; j < types[k].size && whole; j++, c += step) 
+                {
+                    whole = (hit[c >>> 6] & (1L << c)) != 0;
+                }
+                if (whole) return true; // That ship would have sunk.
+            }
+            if (found == MAX_LAYOUTS) return false;
+            if ((found + 1) * types.length > starts.length) 
+            {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                verticals = Arrays.copyOf(verticals, verticals.length * 2);
+            }
+            System.arraycopy(current, 0, starts, found * types.length, types.length);
+            System.arraycopy(currentVertical, 0, verticals, found * types.length, types.length);
+            found++;
+            return true;
+        }
+        
+        private boolean fits(int start, int length, boolean vertical) 
+        {
+            int row = start / size;
+            int col = start % size;
+            if (vertical ? row + length > size : col + length > size) return false;
+            int step = vertical ? size : 1;
+            for (int j = 0, c = start; j < length; j++, c += step) 
+            {
+                if (((blocked[c >>> 6] | taken[c >>> 6]) & (1L << c)) != 0) return false;
+            }
+            return true;
+        }
+        
+        private void mark(int start, int length, boolean vertical, boolean set) 
+        {
+            int step = vertical ? size : 1;
+            for (int j = 0, c = start; j < length; j++, c += step) 
+            {
+                if (set) taken[c >>> 6] |= 1L << c;
+                else taken[c >>> 6] &= ~(1L << c);
+            }
+        }
+    }
+    
+    /**
+     * Fixed-size transposition table; a new position always takes over its slot.
+     * Entries hold either a position's exact value or a lower bound on it.
+     */
+    private static final class Table 
+    {
+        private final long[] keys;
+        private final double[] values;
+        private final boolean[] exact;
+        private final int[] cells;
+        private final int mask;
+        
+        Table(int bits) 
+        {
+            keys = new long[1 << bits];
+            values = new double[1 << bits];
+            exact = new boolean[1 << bits];
+            cells = new int[1 << bits];
+            mask = (1 << bits) - 1;
+        }
+        
+        /** Gets the slot holding a position, or -1. */
+        int find(long hash) 
+        {
+            int slot = slot(hash);
+            return keys[slot] == hash ? slot : -1;
+        }
+        
+        void store(long hash, double value, boolean isExact, int cell) 
+        {
+            int slot = slot(hash);
+            keys[slot] = hash;
+            values[slot] = value;
+            exact[slot] = isExact;
+            cells[slot] = cell;
+        }
+        
+        void clear() 
+        {
+            Arrays.fill(keys, 0);
+        }
+        
+        private int slot(long hash) 
+        {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
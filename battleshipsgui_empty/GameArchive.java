@@ -0,0 +1,404 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class keeps finished games for later queries, millions at a time,
+ * outside the Java heap. Each game is packed into one record - both fleets'
+ * placements and the shot sequence, a couple of hundred bytes on a 10x10
+ * board - appended to direct ByteBuffer segments. An open-addressing table,
+ * also off-heap, maps game ids to records. The heap holds only the segment
+ * list and the games still being played, so neither heap size nor GC pauses
+ * grow with the archive; its size is bounded by -XX:MaxDirectMemorySize.
+ *
+ * Record layout: game id (8 bytes), flags (1: the player won), ship counts
+ * for the player and the computer (a byte each), shot count (2 bytes), a
+ * 3-byte placement per ship (bow cell, then type with the orientation in the
+ * top bit), player's fleet first, then one shot per entry (its cell, with the
+ * top bit set for the computer's shots) in the order they were fired. Shots
+ * take one byte on boards of up to 128 cells and two otherwise.
+ *
+ * As a GameListener an archive records each game it sees start, under the
+ * game's seed as the game id, and stores it when it ends; games on other
+ * board sizes are left out. A later game with the same id replaces the
+ * earlier one in the index. Archives are thread-safe.
+ */
+public class GameArchive implements GameListener 
+{
+    public static final int DEFAULT_SEGMENT_BYTES = 16 << 20;
+    public static final int MAX_SIZE = 181; // Cells fit in 15 bits with the shooter bit.
+    /** Flag on a packed shot given to add for a shot by the computer. */
+    public static final int BY_COMPUTER = 1 << 31;
+    
+    static final int HEADER_BYTES = 13;
+    static final int SHIP_BYTES = 3;
+    private static final int PLAYER_WON = 1;
+    private static final int VERTICAL = 0x80;
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+    
+    private final int boardSize;
+    private final int shotBytes;
+    private final int segmentBytes;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+    private long bytesUsed;
+    
+    // Index: game id and record location + 1 per slot, 0 marking an empty slot.
+    private ByteBuffer keys;
+    private ByteBuffer locations;
+    private int mask;
+    private int count;
+    
+    // Shots of games under way; weak, so games dropped part way through go too.
+    private final Map<BattleshipsGame, Recording> playing = Collections.synchronizedMap(new WeakHashMap<>());
+    
+    /** This creates an archive for games on boards of the given size. */
+    public GameArchive(int boardSize) 
+    {
+        this(boardSize, DEFAULT_SEGMENT_BYTES);
+    }
+    
+    /**
+     * This creates an archive.
+     * @param segmentBytes Off-heap bytes allocated at a time.
+     */
+    public GameArchive(int boardSize, int segmentBytes) 
+    {
+        if (boardSize < 1 || boardSize > MAX_SIZE) 
+        {
+            throw new IllegalArgumentException("Board size out of range: " + boardSize);
+        }
+        this.boardSize = boardSize;
+        this.shotBytes = boardSize * boardSize <= 128 ? 1 : 2;
+        this.segmentBytes = segmentBytes;
+        keys = ByteBuffer.allocateDirect(8 * 1024);
+        locations = ByteBuffer.allocateDirect(8 * 1024);
+        mask = 1023;
+    }
+    
+    @Override
+    public void gameStarted(BattleshipsGame game) 
+    {
+        if (game.getBoardSize() != boardSize) return;
+        Recording recording = playing.computeIfAbsent(game, g -> new Recording());
+        recording.count = 0;
+    }
+    
+    @Override
+    public void shotFired(BattleshipsGame game, boolean byComputer, int row, int col, boolean hit) 
+    {
+        Recording recording = playing.get(game);
+        if (recording != null) recording.add(Board.pack(row, col) | (byComputer ? BY_COMPUTER : 0));
+    }
+    
+    @Override
+    public void gameOver(BattleshipsGame game, boolean playerWon, int shotsFired) 
+    {
+        Recording recording = playing.remove(game);
+        if (recording == null) return; // Joined part way through.
+        add(game.getSeed(), game.getPlayerBoard(), game.getComputerBoard(), recording.shots, recording.count);
+    }
+    
+    /**
+     * Archives a finished game.
+     * @param shots Shots in the order fired, each Board.pack(row, col), with
+     *     BY_COMPUTER set for the computer's.
+     */
+    public synchronized void add(long gameId, Board player, Board computer, int[] shots, int shotCount) 
+    {
+        if (player.getSize() != boardSize || computer.getSize() != boardSize) 
+        {
+            throw new IllegalArgumentException("Boards are not " + boardSize + "x" + boardSize);
+        }
+        int ships = player.getShipCount() + computer.getShipCount();
+        if (player.getShipCount() > 0xFF || computer.getShipCount() > 0xFF || shotCount > 0xFFFF) 
+        {
+            throw new IllegalArgumentException("Game too large to archive");
+        }
+        int bytes = HEADER_BYTES + ships * SHIP_BYTES + shotCount * shotBytes;
+        if (current == null || current.remaining() < bytes) 
+        {
+            current = ByteBuffer.allocateDirect(Math.max(segmentBytes, bytes));
+            segments.add(current);
+        }
+        long location = (long) (segments.size() - 1) << 32 | current.position();
+        
+        current.putLong(gameId);
+        current.put((byte) (computer.allShipsSunk() ? PLAYER_WON : 0));
+        current.put((byte) player.getShipCount());
+        current.put((byte) computer.getShipCount());
+        current.putShort((short) shotCount);
+        putFleet(player);
+        putFleet(computer);
+        for (int i = 0; i < shotCount; i++) 
+        {
+            int shot = shots[i];
+            int cell = Board.rowOf(shot & ~BY_COMPUTER) * boardSize + Board.colOf(shot);
+            if (shotBytes == 1) 
+            {
+                current.put((byte) (cell | (shot < 0 ? 0x80 : 0)));
+            } 
+            else 
+            {
+                current.putShort((short) (cell | (shot < 0 ? 0x8000 : 0)));
+            }
+        }
+        bytesUsed += bytes;
+        put(gameId, location);
+    }
+    
+    /** Gets an archived game, or null if there is none with that id. */
+    public synchronized Record get(long gameId) 
+    {
+        long location = find(gameId);
+        return location < 0 ? null : new Record().at(location);
+    }
+    
+    /** Checks whether a game with that id is archived. */
+    public synchronized boolean contains(long gameId) 
+    {
+        return find(gameId) >= 0;
+    }
+    
+    /**
+     * Passes every archived game, in the order added, to a visitor. The visitor
+     * gets one Record moved from game to game, so it must not keep it.
+     * Games replaced by a later one with the same id are skipped.
+     */
+    public synchronized void scan(Consumer<Record> visitor) 
+    {
+        Record record = new Record();
+        for (int s = 0; s < segments.size(); s++) 
+        {
+            ByteBuffer segment = segments.get(s);
+            for (int offset = 0; offset < segment.position(); offset += record.bytes()) 
+            {
+                long location = (long) s << 32 | offset;
+                record.at(location);
+                if (find(record.getGameId()) == location) visitor.accept(record);
+            }
+        }
+    }
+    
+    /** Gets the number of games in the index. */
+    public synchronized int size() 
+    {
+        return count;
+    }
+    
+    /** Gets the off-heap bytes taken by records. */
+    public synchronized long getBytesUsed() 
+    {
+        return bytesUsed;
+    }
+    
+    /** Gets the off-heap bytes allocated, records and index together. */
+    public synchronized long getBytesAllocated() 
+    {
+        long bytes = keys.capacity() + locations.capacity();
+        for (ByteBuffer segment : segments) bytes += segment.capacity();
+        return bytes;
+    }
+    
+    public int getBoardSize() 
+    {
+        return boardSize;
+    }
+    
+    private void putFleet(Board board) 
+    {
+        for (int i = 0; i < board.getShipCount(); i++) 
+        {
+            current.putShort((short) board.shipStart(i));
+            current.put((byte) (board.shipType(i).ordinal() | (board.shipVertical(i) ? VERTICAL : 0)));
+        }
+    }
+    
+    /** Gets a game's location, or -1. Caller holds the lock. */
+    private long find(long gameId) 
+    {
+        for (int slot = slot(gameId); ; slot = (slot + 1) & mask) 
+        {
+            long location = locations.getLong(slot * 8);
+            if (location == 0) return -1;
+            if (keys.getLong(slot * 8) == gameId) return location - 1;
+        }
+    }
+    
+    /** Points a game id at a location, growing the table at half full. Caller holds the lock. */
+    private void put(long gameId, long location) 
+    {
+        if (count + 1 > (mask + 1) / 2) grow();
+        int slot = slot(gameId);
+        while (locations.getLong(slot * 8) != 0 && keys.getLong(slot * 8) != gameId) 
+        {
+            slot = (slot + 1) & mask;
+        }
+        if (locations.getLong(slot * 8) == 0) count++;
+        keys.putLong(slot * 8, gameId);
+        locations.putLong(slot * 8, location + 1);
+    }
+    
+    private void grow() 
+    {
+        int oldSlots = mask + 1;
+        if (oldSlots >= 1 << 27) throw new IllegalStateException("Archive index is full");
+        ByteBuffer oldKeys = keys;
+        ByteBuffer oldLocations = locations;
+        keys = ByteBuffer.allocateDirect(oldSlots * 16);
+        locations = ByteBuffer.allocateDirect(oldSlots * 16);
+        mask = oldSlots * 2 - 1;
+        count = 0;
+        for (int slot = 0; slot < oldSlots; slot++) 
+        {
+            long location = oldLocations.getLong(slot * 8);
+            if (location != 0) put(oldKeys.getLong(slot * 8), location - 1);
+        }
+    }
+    
+    private int slot(long gameId) 
+    {
+        long hash = gameId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+    
+    /** Shots of one game under way. */
+    private static final class Recording 
+    {
+        int[] shots = new int[64];
+        int count;
+        
+        void add(int shot) 
+        {
+            if (count == shots.length) shots = Arrays.copyOf(shots, count * 2);
+            shots[count++] = shot;
+        }
+    }
+    
+    /** A view of one archived game, read straight from off-heap memory. */
+    public final class Record 
+    {
+        private ByteBuffer segment;
+        private int offset;
+        
+        private Record() 
+        {
+        }
+        
+        private Record at(long location) 
+        {
+            segment = segments.get((int) (location >>> 32));
+            offset = (int) location;
+            return this;
+        }
+        
+        private int bytes() 
+        {
+            return HEADER_BYTES + (getShipCount(true) + getShipCount(false)) * SHIP_BYTES
+                   + getShotCount() * shotBytes;
+        }
+        
+        public long getGameId() 
+        {
+            return segment.getLong(offset);
+        }
+        
+        public boolean isPlayerWon() 
+        {
+            return (segment.get(offset + 8) & PLAYER_WON) != 0;
+        }
+        
+        /** Gets the number of ships in one fleet. */
+        public int getShipCount(boolean playerBoard) 
+        {
+            return segment.get(offset + (playerBoard ? 9 : 10)) & 0xFF;
+        }
+        
+        /** Gets the bow row of a ship, in placement order. */
+        public int getShipRow(boolean playerBoard, int ship) 
+        {
+            return shipCell(playerBoard, ship) / boardSize;
+        }
+        
+        public int getShipCol(boolean playerBoard, int ship) 
+        {
+            return shipCell(playerBoard, ship) % boardSize;
+        }
+        
+        public Ship.Type getShipType(boolean playerBoard, int ship) 
+        {
+            return TYPES[segment.get(shipAt(playerBoard, ship) + 2) & ~VERTICAL & 0xFF];
+        }
+        
+        public boolean isShipVertical(boolean playerBoard, int ship) 
+        {
+            return (segment.get(shipAt(playerBoard, ship) + 2) & VERTICAL) != 0;
+        }
+        
+        public int getShotCount() 
+        {
+            return segment.getShort(offset + 11) & 0xFFFF;
+        }
+        
+        /** Gets the row of the i-th shot fired. */
+        public int getShotRow(int i) 
+        {
+            return shotCell(i) / boardSize;
+        }
+        
+        public int getShotCol(int i) 
+        {
+            return shotCell(i) % boardSize;
+        }
+        
+        public boolean isComputerShot(int i) 
+        {
+            return shotBytes == 1 ? segment.get(shotAt(i)) < 0 : segment.getShort(shotAt(i)) < 0;
+        }
+        
+        /**
+         * Rebuilds one side's board as it stood at the end of the game. Ships
+         * are named after their type, as names are not archived.
+         */
+        public Board toBoard(boolean playerBoard) 
+        {
+            Board board = new Board(boardSize);
+            for (int i = 0; i < getShipCount(playerBoard); i++) 
+            {
+                Ship.Type type = getShipType(playerBoard, i);
+                board.placeShip(getShipRow(playerBoard, i), getShipCol(playerBoard, i), type, type.name(),
+                                isShipVertical(playerBoard, i));
+            }
+            for (int i = 0; i < getShotCount(); i++) 
+            {
+                if (isComputerShot(i) == playerBoard) board.recordShot(getShotRow(i), getShotCol(i));
+            }
+            return board;
+        }
+        
+        private int shipAt(boolean playerBoard, int ship) 
+        {
+            return offset + HEADER_BYTES + ((playerBoard ? 0 : getShipCount(true)) + ship) * SHIP_BYTES;
+        }
+        
+        private int shipCell(boolean playerBoard, int ship) 
+        {
+            return segment.getShort(shipAt(playerBoard, ship)) & 0xFFFF;
+        }
+        
+        private int shotAt(int i) 
+        {
+            return offset + HEADER_BYTES + (getShipCount(true) + getShipCount(false)) * SHIP_BYTES + i * shotBytes;
+        }
+        
+        private int shotCell(int i) 
+        {
+            return shotBytes == 1 ? segment.get(shotAt(i)) & 0x7F : segment.getShort(shotAt(i)) & 0x7FFF;
+        }
+    }
+}
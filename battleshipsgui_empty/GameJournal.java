@@ -0,0 +1,373 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a game safe on disk as it is played.
+ * Every placement and shot is appended to a log as one 8-byte entry, so a turn
+ * costs a few bytes of I/O instead of a whole save. Every so many entries the
+ * game is written out as a snapshot and the log starts again; recovery loads
+ * the snapshot and replays the log tail after it. A torn or corrupt entry at
+ * the end of the log (e.g. from a crash mid-write) ends the replay there.
+ * Entries and snapshots are encoded on the thread playing the game and written,
+ * in order, by a background thread, so a turn never waits on the disk.
+ */
+public class GameJournal implements Closeable 
+{
+    public static final int ENTRY_BYTES = 8;
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 512; // Entries between snapshots.
+    
+    private static final int LOG_MAGIC = 0x42534A4C;      // "BSJL"
+    private static final int SNAPSHOT_MAGIC = 0x42534A53; // "BSJS"
+    private static final int LOG_HEADER_BYTES = 12;       // Magic, first sequence number.
+    
+    // Entry kinds.
+    private static final byte NEW_GAME = 1;      // cell = board size; flags = SALVO_GAME.
+    private static final byte PLACE = 2;         // flags = side | vertical << 1 | type << 2.
+    private static final byte PLAYER_SHOT = 3;  // flags = ENDS_SALVO on a salvo's last shot.
+    private static final byte COMPUTER_SHOT = 4;
+    private static final int SALVO_GAME = 1;
+    private static final int ENDS_SALVO = 1;
+    
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final int snapshotInterval;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> 
+    {
+        Thread thread = new Thread(task, "journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel log;       // Used by the writer once the journal is running.
+    private BattleshipsGame game;
+    private long sequence;         // Entries recorded since the journal was created.
+    private long snapshotSequence; // Entries covered by the newest snapshot, written or queued.
+    
+    private GameJournal(String basename, int snapshotInterval) 
+    {
+        this.snapshotPath = Path.of(basename + ".snap");
+        this.logPath = Path.of(basename + ".log");
+        this.snapshotInterval = snapshotInterval;
+    }
+    
+    /**
+     * Starts a new journal for a game, replacing any journal with the same name.
+     * The first snapshot is written in the background like the rest.
+     * @param basename Path prefix; the journal uses basename.snap and basename.log.
+     */
+    public static GameJournal start(String basename, BattleshipsGame game) 
+    {
+        return start(basename, game, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+    
+    /** Starts a new journal with a given number of entries between snapshots. */
+    public static GameJournal start(String basename, BattleshipsGame game, int snapshotInterval) 
+    {
+        GameJournal journal = new GameJournal(basename, snapshotInterval);
+        journal.follow(game);
+        return journal;
+    }
+    
+    /**
+     * Rebuilds a game from its journal and keeps journaling it.
+     * If the crash came between the player's miss and the computer's reply,
+     * the game is left on the computer's turn for the caller to play, on
+     * whichever thread owns the computer player.
+     * @return the recovered game, or null if there is no journal.
+     */
+    public static BattleshipsGame recover(String basename) throws IOException 
+    {
+        GameJournal journal = new GameJournal(basename, DEFAULT_SNAPSHOT_INTERVAL);
+        if (!Files.exists(journal.snapshotPath)) return null;
+        
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(journal.snapshotPath));
+        if (snapshot.remaining() < 12 || snapshot.getInt() != SNAPSHOT_MAGIC) 
+        {
+            throw new IOException("Not a journal snapshot: " + journal.snapshotPath);
+        }
+        journal.snapshotSequence = snapshot.getLong();
+        journal.sequence = journal.snapshotSequence;
+        BattleshipsGame game = BattleshipsGame.decode(snapshot);
+        journal.game = game;
+        
+        journal.log = FileChannel.open(journal.logPath, StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = journal.replay();
+        journal.log.truncate(end); // Drop any torn tail before appending again.
+        journal.log.position(end);
+        
+        game.setJournal(journal);
+        return game;
+    }
+    
+    /**
+     * Records a freshly placed game: the board size and every ship.
+     * A snapshot is only taken after the last ship, so it never splits a fleet.
+     */
+    void recordNewGame(BattleshipsGame game) 
+    {
+        write(NEW_GAME, game.isSalvo() ? SALVO_GAME : 0, game.getBoardSize());
+        recordPlacements(game.getPlayerBoard(), 0);
+        recordPlacements(game.getComputerBoard(), 1);
+        compactIfDue();
+    }
+    
+    /** Records one shot as a packed row * size + col cell. */
+    void recordShot(boolean computer, int cell) 
+    {
+        append(computer ? COMPUTER_SHOT : PLAYER_SHOT, 0, cell);
+    }
+    
+    /**
+     * Records a salvo, one entry per shot with the last marked as ending it.
+     * A snapshot is only taken after the whole salvo, so it never splits one.
+     * @param shots Shots packed with Board.pack.
+     */
+    void recordSalvo(boolean computer, int[] shots, int count) 
+    {
+        int size = game.getBoardSize();
+        for (int i = 0; i < count; i++) 
+        {
+            int cell = Board.rowOf(shots[i]) * size + Board.colOf(shots[i]);
+            write(computer ? COMPUTER_SHOT : PLAYER_SHOT, i == count - 1 ? ENDS_SALVO : 0, cell);
+        }
+        compactIfDue();
+    }
+    
+    /**
+     * Journals another game from here on, e.g. one loaded from a save, in
+     * place of the current one. Its snapshot is queued behind everything
+     * already written for the old game, so the caller never waits.
+     */
+    public void follow(BattleshipsGame next) 
+    {
+        if (game != null) game.setJournal(null);
+        game = next;
+        next.setJournal(this);
+        queueSnapshot();
+    }
+    
+    /** Gets the number of entries recorded over the journal's life. */
+    public long getSequence() 
+    {
+        return sequence;
+    }
+    
+    /**
+     * Stops journaling, waiting for queued entries and snapshots to be written.
+     * @throws IOException if they did not finish within two seconds.
+     */
+    @Override
+    public void close() throws IOException 
+    {
+        if (game != null) game.setJournal(null);
+        writer.shutdown();
+        try 
+        {
+            if (!writer.awaitTermination(2, TimeUnit.SECONDS)) throw new IOException("Journal did not finish");
+        } 
+        catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for journal");
+        } 
+        finally 
+        {
+            if (log != null) log.close();
+        }
+    }
+    
+    private void recordPlacements(Board board, int side) 
+    {
+        for (int i = 0; i < board.getShipCount(); i++) 
+        {
+            Ship ship = board.getShip(i);
+            int flags = side | (ship.isVertical() ? 2 : 0) | ship.getType().ordinal() << 2;
+            write(PLACE, flags, ship.getRow() * board.getSize() + ship.getCol());
+        }
+    }
+    
+    /**
+     * Appends one entry, and takes a snapshot once enough have built up.
+     * Journaling is best effort: a failed write is reported and play carries on.
+     */
+    private void append(byte kind, int flags, int cell) 
+    {
+        write(kind, flags, cell);
+        compactIfDue();
+    }
+    
+    /** Queues one entry for the writer. */
+    private void write(byte kind, int flags, int cell) 
+    {
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        entry.put(kind).put((byte) flags).putShort(check(kind, flags, cell)).putInt(cell).flip();
+        sequence++;
+        writer.execute(() -> 
+        {
+            if (log == null) return; // The first snapshot failed; it is reported already.
+            try 
+            {
+                while (entry.hasRemaining()) log.write(entry);
+            } 
+            catch (IOException e) 
+            {
+                System.err.println("Error journaling: " + e.getMessage());
+            }
+        });
+    }
+    
+    /** Queues a snapshot of the game as it is now, once enough entries have built up. */
+    private void compactIfDue() 
+    {
+        if (sequence - snapshotSequence >= snapshotInterval) queueSnapshot();
+    }
+    
+    /** Queues a snapshot of the game as it is now. */
+    private void queueSnapshot() 
+    {
+        ByteBuffer state = game.encode(); // Cheap; the fsync is left to the writer.
+        long covered = sequence;
+        snapshotSequence = covered;
+        writer.execute(() -> 
+        {
+            try 
+            {
+                compact(state, covered);
+            } 
+            catch (IOException e) 
+            {
+                System.err.println("Error journaling: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Writes the new snapshot, then empties the log.
+     * The snapshot records how many entries it covers, so a crash between the
+     * two steps only means recovery skips entries it already has.
+     * @param state The game's save encoding.
+     * @param covered Entries recorded when the game was encoded.
+     */
+    private void compact(ByteBuffer state, long covered) throws IOException 
+    {
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(SNAPSHOT_MAGIC).putLong(covered).flip();
+        Path temp = Path.of(snapshotPath + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) 
+             {
+            while (header.hasRemaining() || state.hasRemaining()) out.write(new ByteBuffer[]{header, state});
+            out.force(false);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        if (log == null) 
+        {
+            log = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        log.truncate(0);
+        ByteBuffer logHeader = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putLong(covered).flip();
+        log.position(0);
+        while (logHeader.hasRemaining()) log.write(logHeader);
+    }
+    
+    /**
+     * Replays the log entries after the snapshot onto the game.
+     * @return position just after the last good entry.
+     */
+    private long replay() throws IOException 
+    {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        log.read(header, 0);
+        if (header.hasRemaining() || header.flip().getInt() != LOG_MAGIC) 
+        {
+            // Crashed while resetting the log: the snapshot already has everything.
+            log.truncate(0);
+            ByteBuffer fresh = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putLong(sequence).flip();
+            while (fresh.hasRemaining()) log.write(fresh, fresh.position());
+            return LOG_HEADER_BYTES;
+        }
+        long skip = snapshotSequence - header.getLong(); // Entries the snapshot already covers.
+        
+        long position = LOG_HEADER_BYTES;
+        ByteBuffer entries = ByteBuffer.allocate(ENTRY_BYTES * 1024);
+        while (true) 
+        {
+            entries.clear();
+            int read = log.read(entries, position);
+            if (read < ENTRY_BYTES) return position;
+            entries.flip();
+            while (entries.remaining() >= ENTRY_BYTES) 
+            {
+                byte kind = entries.get();
+                int flags = entries.get() & 0xFF;
+                short check = entries.getShort();
+                int cell = entries.getInt();
+                if (check != check(kind, flags, cell)) return position;
+                if (skip > 0) 
+                {
+                    skip--;
+                } 
+                else 
+                {
+                    if (!apply(kind, flags, cell)) return position;
+                    sequence++;
+                }
+                position += ENTRY_BYTES;
+            }
+        }
+    }
+    
+    /**
+     * Applies one entry to the game.
+     * @return false if the entry does not fit the game, which ends the replay.
+     */
+    private boolean apply(byte kind, int flags, int cell) 
+    {
+        int size = game.getBoardSize();
+        if (kind == NEW_GAME) 
+        {
+            if (cell != size) return false;
+            game.resetForReplay((flags & SALVO_GAME) != 0);
+            return true;
+        }
+        if (cell < 0 || cell >= size * size) return false;
+        int row = cell / size;
+        int col = cell % size;
+        switch (kind) 
+        {
+            case PLACE:
+                int type = flags >>> 2;
+                if (type >= Ship.Type.values().length) return false;
+                return game.replayPlacement((flags & 1) != 0, row, col, Ship.Type.values()[type], (flags & 2) != 0);
+            case PLAYER_SHOT:
+                if (!game.isPlayerTurn() || !game.getComputerBoard().isValidShot(row, col)) return false;
+                if (game.isSalvo()) game.replaySalvoShot(false, row, col, (flags & ENDS_SALVO) != 0);
+                else game.applyPlayerShot(row, col);
+                return true;
+            case COMPUTER_SHOT:
+                if (game.isPlayerTurn() || !game.getPlayerBoard().isValidShot(row, col)) return false;
+                if (game.isSalvo()) game.replaySalvoShot(true, row, col, (flags & ENDS_SALVO) != 0);
+                else game.applyComputerShot(row, col);
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /** A 16-bit check over an entry, to catch torn or stray writes. */
+    private static short check(byte kind, int flags, int cell) 
+    {
+        int h = (kind * 31 + flags) * 0x9E3779B1 ^ cell * 0x85EBCA6B;
+        return (short) (h ^ h >>> 16);
+    }
+}
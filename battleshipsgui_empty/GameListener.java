@@ -0,0 +1,37 @@
+/**
+ * This interface receives a game's events as they happen.
+ * Events are plain method calls with primitive arguments, so publishing one
+ * allocates nothing. Listeners run on the thread that changed the game and
+ * must return quickly; anything slow, like printing, belongs on another
+ * thread, as AsyncConsoleSink does. Every method does nothing by default.
+ */
+public interface GameListener 
+{
+    /** A new game has been set up with both fleets placed. */
+    default void gameStarted(BattleshipsGame game) 
+    {
+    }
+    
+    /**
+     * A shot has landed.
+     * @param byComputer true for the computer's shot at the player's board.
+     */
+    default void shotFired(BattleshipsGame game, boolean byComputer, int row, int col, boolean hit) 
+    {
+    }
+    
+    /** A shot sank a ship; ship belongs to the side that was fired on. */
+    default void shipSunk(BattleshipsGame game, boolean byComputer, Ship ship) 
+    {
+    }
+    
+    /** The turn has passed; playerTurn says to whom. */
+    default void turnChanged(BattleshipsGame game, boolean playerTurn) 
+    {
+    }
+    
+    /** The last ship of one side has been sunk. */
+    default void gameOver(BattleshipsGame game, boolean playerWon, int shotsFired) 
+    {
+    }
+}
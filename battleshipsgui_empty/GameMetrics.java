@@ -0,0 +1,290 @@
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class collects counters and latency histograms for the game and
+ * publishes them over JMX once register() is called.
+ * Metrics are on unless the JVM runs with -Dbattleships.metrics=false. The
+ * switch is a static final, so when it is off the JIT folds every call here
+ * away; when it is on a sample costs two nanoTime reads and a few striped adds.
+ * Typical use:
+ *     long started = GameMetrics.start();
+ *     ...
+ *     GameMetrics.MOVE.record(started);
+ */
+public class GameMetrics implements GameMetricsMXBean 
+{
+    public static final boolean ENABLED = !"false".equals(System.getProperty("battleships.metrics"));
+    public static final String OBJECT_NAME = "battleships:type=GameMetrics";
+    
+    public static final Latency PLAYER_SHOT = new Latency();
+    public static final Latency COMPUTER_TURN = new Latency();
+    public static final Latency MOVE = new Latency();
+    public static final Latency SAVE = new Latency();
+    public static final Latency LOAD = new Latency();
+    
+    private static final LongAdder shots = new LongAdder();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder gamesCompleted = new LongAdder();
+    private static final LongAdder placementRetries = new LongAdder();
+    private static boolean registered;
+    
+    private GameMetrics() 
+    {
+    }
+    
+    /**
+     * Registers the MBean with the platform MBean server, once.
+     * Does nothing when metrics are disabled.
+     */
+    public static synchronized void register() 
+    {
+        if (!ENABLED || registered) return;
+        try 
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new GameMetrics(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } 
+        catch (JMException e) 
+        {
+            System.err.println("Error registering metrics: " + e.getMessage());
+        }
+    }
+    
+    /** Gets a start time for Latency.record, or 0 when metrics are off. */
+    public static long start() 
+    {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+    
+    /** Counts a shot that was applied to a board. */
+    public static void countShot(boolean hit) 
+    {
+        if (!ENABLED) return;
+        shots.increment();
+        if (hit) hits.increment();
+    }
+    
+    /** Counts a game reaching game over. */
+    public static void countGameCompleted() 
+    {
+        if (ENABLED) gamesCompleted.increment();
+    }
+    
+    /** Counts fleet placements that had to start again. */
+    public static void countPlacementRetries(int retries) 
+    {
+        if (ENABLED && retries > 0) placementRetries.add(retries);
+    }
+    
+    // MXBean attributes.
+    public boolean isEnabled() 
+    {
+        return ENABLED;
+    }
+    public long getShots() 
+    {
+        return shots.sum();
+    }
+    public long getHits() 
+    {
+        return hits.sum();
+    }
+    public long getGamesCompleted() 
+    {
+        return gamesCompleted.sum();
+    }
+    public long getPlacementRetries() 
+    {
+        return placementRetries.sum();
+    }
+    public LatencySummary getPlayerShotLatency() 
+    {
+        return PLAYER_SHOT.summary();
+    }
+    public LatencySummary getComputerTurnLatency() 
+    {
+        return COMPUTER_TURN.summary();
+    }
+    public LatencySummary getMoveLatency() 
+    {
+        return MOVE.summary();
+    }
+    public LatencySummary getSaveLatency() 
+    {
+        return SAVE.summary();
+    }
+    public LatencySummary getLoadLatency() 
+    {
+        return LOAD.summary();
+    }
+    
+    public void reset() 
+    {
+        shots.reset();
+        hits.reset();
+        gamesCompleted.reset();
+        placementRetries.reset();
+        for (Latency latency : new Latency[]{PLAYER_SHOT, COMPUTER_TURN, MOVE, SAVE, LOAD}) 
+        {
+            latency.reset();
+        }
+    }
+    
+    /**
+     * This class is a lock-free latency histogram.
+     * Buckets are log-linear: each power of two of nanoseconds is split into
+     * four, so any percentile is within 25% of the true value. The buckets are
+     * striped by thread, like a LongAdder's cells, so threads timing similar
+     * work do not all bump one cache line; summary() adds the stripes up.
+     */
+    public static final class Latency 
+    {
+        private static final int SUB_BITS = 2;
+        private static final int BUCKETS = 64 << SUB_BITS;
+        private static final int STRIDE = BUCKETS + 8; // A cache line of padding between stripes.
+        private static final int STRIPES = 
+            Math.min(32, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+        private static final int STRIPE_SHIFT = 64 - Integer.numberOfTrailingZeros(STRIPES);
+        
+        private final AtomicLongArray buckets = new AtomicLongArray(STRIPES * STRIDE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        
+        /** Records the time since start() returned started. */
+        public void record(long started) 
+        {
+            if (ENABLED) recordNanos(System.nanoTime() - started);
+        }
+        
+        /** Records a duration measured elsewhere. */
+        public void recordNanos(long nanos) 
+        {
+            if (!ENABLED) return;
+            nanos = Math.max(0, nanos);
+            buckets.getAndIncrement(stripe() + bucketOf(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+        
+        /** Takes a snapshot; concurrent records may land on either side of it. */
+        public LatencySummary summary() 
+        {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) 
+            {
+                for (int stripe = 0; stripe < STRIPES; stripe++) counts[i] += buckets.get(stripe * STRIDE + i);
+                total += counts[i];
+            }
+            double mean = total == 0 ? 0 : totalNanos.sum() / 1000.0 / count.sum();
+            double max = maxNanos.get() / 1000.0;
+            return new LatencySummary(total, mean, Math.min(max, percentile(counts, total, 0.50)),
+                Math.min(max, percentile(counts, total, 0.99)), max);
+        }
+        
+        void reset() 
+        {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+        
+        /** Gets where the calling thread's stripe starts. */
+        private static int stripe() 
+        {
+            long id = Thread.currentThread().getId();
+            return (int) (id * 0x9E3779B97F4A7C15L >>> STRIPE_SHIFT) * STRIDE; // Consecutive ids spread out.
+        }
+        
+        /** Buckets below 2^SUB_BITS ns hold one value each; above, (exponent, next SUB_BITS bits). */
+        private static int bucketOf(long nanos) 
+        {
+            if (nanos < (1 << SUB_BITS)) return (int) nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+        
+        /** Gets the largest value a bucket can hold. */
+        private static long upperBound(int bucket) 
+        {
+            if (bucket < (1 << SUB_BITS)) return bucket;
+            int exponent = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+            long sub = bucket & ((1 << SUB_BITS) - 1);
+            return ((1L << SUB_BITS | sub) + 1 << (exponent - SUB_BITS)) - 1;
+        }
+        
+        /** Gets a percentile in microseconds, as the upper bound of its bucket. */
+        private static double percentile(long[] counts, long total, double fraction) 
+        {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) 
+            {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i) / 1000.0;
+            }
+            return upperBound(counts.length - 1) / 1000.0;
+        }
+    }
+    
+    /** This class is a point-in-time view of a Latency, in microseconds. */
+    public static final class LatencySummary 
+    {
+        private final long count;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p99Micros;
+        private final double maxMicros;
+        
+        @ConstructorProperties({"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"})
+        public LatencySummary(long count, double meanMicros, double p50Micros, double p99Micros, double maxMicros) 
+        {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+        
+        public long getCount() 
+        {
+            return count;
+        }
+        public double getMeanMicros() 
+        {
+            return meanMicros;
+        }
+        public double getP50Micros() 
+        {
+            return p50Micros;
+        }
+        public double getP99Micros() 
+        {
+            return p99Micros;
+        }
+        public double getMaxMicros() 
+        {
+            return maxMicros;
+        }
+        
+        @Override
+        public String toString() 
+        {
+            return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                count, meanMicros, p50Micros, p99Micros, maxMicros);
+        }
+    }
+}
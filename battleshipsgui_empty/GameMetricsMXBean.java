@@ -0,0 +1,22 @@
+/**
+ * This interface is the JMX view of GameMetrics, registered as
+ * battleships:type=GameMetrics. Latencies are reported in microseconds.
+ */
+public interface GameMetricsMXBean 
+{
+    boolean isEnabled();
+    
+    long getShots();
+    long getHits();
+    long getGamesCompleted();
+    long getPlacementRetries();
+    
+    GameMetrics.LatencySummary getPlayerShotLatency();   // processPlayerShot.
+    GameMetrics.LatencySummary getComputerTurnLatency(); // Computer turn, thinking to applied.
+    GameMetrics.LatencySummary getMoveLatency();         // ComputerPlayer.nextShot.
+    GameMetrics.LatencySummary getSaveLatency();
+    GameMetrics.LatencySummary getLoadLatency();
+    
+    /** Zeroes every counter and histogram. */
+    void reset();
+}
@@ -0,0 +1,375 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class hosts many games over a line-based TCP protocol on localhost.
+ * Each connection gets its own thread - a virtual thread where the JVM has them -
+ * and may drive any number of sessions. Commands, one per line:
+ *   NEW [size] [SALVO]         -> OK id (size at most MAX_BOARD_SIZE)
+ *   SHOOT id row col           -> OK HIT|MISS|SUNK [REPLY row col HIT|MISS|SUNK] [WON|LOST]
+ *   SALVO id row col...        -> OK HIT|MISS|SUNK... [REPLY row col HIT|MISS|SUNK...] [WON|LOST]
+ *   STATUS id                  -> OK shots PLAYER|COMPUTER|OVER [winner]
+ *   BOARD id MINE|THEIRS       -> OK size cells (row by row, no separators)
+ *   END id                     -> OK
+ *   WATCH id [max]             -> OK [KEY size playercells computercells] [P|C row col HIT|MISS]...
+ *   BYE                        -> closes the connection
+ * WATCH may come from any connection and answers at once with whatever was
+ * played since that connection last watched the game: a keyframe of both boards
+ * as an opponent sees them, then shots at the Player's or Computer's board.
+ * A watcher that leaves it too long gets a fresh keyframe instead of the backlog.
+ * Games made with SALVO are played with SALVO, one shot per ship still afloat
+ * each turn; as with SHOOT, SUNK marks only the hit that sank a ship.
+ * Failures answer ERR message.
+ */
+public class GameServer implements AutoCloseable 
+{
+    public static final int DEFAULT_PORT = 4567;
+    public static final int DEFAULT_WATCH_FRAMES = 256;
+    public static final int MAX_BOARD_SIZE = 100; // A board of Board.MAX_SIZE a side costs a session over 100 MB.
+    
+    private final SessionManager sessions;
+    private final ServerSocket socket;
+    private final ExecutorService connections = newPerTaskExecutor();
+    
+    /**
+     * This opens a server on a local port.
+     * @param port Port to listen on, or 0 for any free port.
+     */
+    public GameServer(int port, SessionManager sessions) throws IOException 
+    {
+        this.sessions = sessions;
+        this.socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+    
+    /** Accepts connections until the server is closed. */
+    public void serve() 
+    {
+        while (!socket.isClosed()) 
+        {
+            try 
+            {
+                Socket client = socket.accept();
+                connections.execute(() -> handle(client));
+            } 
+            catch (IOException e) 
+            {
+                if (!socket.isClosed()) System.err.println("Error accepting: " + e.getMessage());
+            }
+        }
+    }
+    
+    public int getPort() 
+    {
+        return socket.getLocalPort();
+    }
+    
+    @Override
+    public void close() throws IOException 
+    {
+        socket.close();
+        connections.shutdownNow();
+    }
+    
+    /** Serves one connection until BYE or end of input. */
+    private void handle(Socket client) 
+    {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) 
+        {
+            Map<String, SpectatorFeed.Subscription> watching = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) 
+            {
+                String[] words = words(line);
+                if (words[0].equalsIgnoreCase("BYE")) break;
+                out.write(execute(words, watching));
+                out.write('\n');
+                if (!in.ready()) out.flush(); // Answer pipelined commands in one write.
+            }
+        } 
+        catch (IOException e) 
+        {
+            // Client went away; nothing to tell it.
+        }
+    }
+    
+    /**
+     * Runs one command and builds its reply line.
+     * @param watching The connection's subscriptions, by session id.
+     */
+    String execute(String[] words, Map<String, SpectatorFeed.Subscription> watching) 
+    {
+        try 
+        {
+            switch (words[0].toUpperCase()) 
+            {
+                case "NEW":
+                    int size = words.length > 1 ? Integer.parseInt(words[1]) : Board.DEFAULT_SIZE;
+                    boolean salvo = words.length > 2 && words[2].equalsIgnoreCase("SALVO");
+                    if (size < 1 || size > MAX_BOARD_SIZE) return "ERR board size must be 1 to " + MAX_BOARD_SIZE;
+                    try 
+                    {
+                        return "OK " + sessions.create(size, salvo);
+                    } 
+                    catch (IllegalStateException e) 
+                    {
+                        return "ERR fleet does not fit"; // Board too small for the fleet.
+                    }
+                case "SHOOT":
+                    int row = Integer.parseInt(words[2]);
+                    int col = Integer.parseInt(words[3]);
+                    return reply(sessions.withGame(words[1], game -> shoot(game, row, col)));
+                case "SALVO":
+                    int[] shots = shots(words, 2);
+                    return reply(sessions.withGame(words[1], game -> salvo(game, shots)));
+                case "STATUS":
+                    return reply(sessions.withGame(words[1], GameServer::status));
+                case "BOARD":
+                    boolean mine = words[2].equalsIgnoreCase("MINE");
+                    return reply(sessions.withGame(words[1], game -> board(game, mine)));
+                case "END":
+                    return sessions.remove(words[1]) ? "OK" : "ERR no such game";
+                case "WATCH":
+                    int max = words.length > 2 ? Integer.parseInt(words[2]) : DEFAULT_WATCH_FRAMES;
+                    return watch(watching, words[1], max);
+                default:
+                    return "ERR unknown command " + words[0];
+            }
+        } 
+        catch (ArrayIndexOutOfBoundsException e) 
+        {
+            return "ERR missing argument";
+        } 
+        catch (IllegalArgumentException | IOException e) 
+        {
+            return "ERR " + e.getMessage();
+        }
+    }
+    
+    /** Splits a command line at runs of whitespace, without a regular expression. */
+    static String[] words(String line) 
+    {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) 
+        {
+            if (line.charAt(i) > ' ' && (i == 0 || line.charAt(i - 1) <= ' ')) count++;
+        }
+        String[] words = new String[Math.max(1, count)];
+        words[0] = "";
+        for (int i = 0, w = 0; i < line.length(); ) 
+        {
+            while (i < line.length() && line.charAt(i) <= ' ') i++;
+            int start = i;
+            while (i < line.length() && line.charAt(i) > ' ') i++;
+            if (i > start) words[w++] = line.substring(start, i);
+        }
+        return words;
+    }
+    
+    /** Polls the connection's subscription to a game, subscribing on first use. */
+    private String watch(Map<String, SpectatorFeed.Subscription> watching, String id, int max) throws IOException 
+    {
+        SpectatorFeed.Subscription subscription = watching.get(id);
+        if (subscription == null) 
+        {
+            SpectatorFeed feed = sessions.feed(id);
+            if (feed == null) return "ERR no such game";
+            subscription = feed.subscribe();
+            watching.put(id, subscription);
+        }
+        StringBuilder sb = new StringBuilder("OK");
+        subscription.poll(new SpectatorFeed.Viewer() 
+        {
+            @Override
+            public void keyframe(SpectatorFeed.Keyframe keyframe) 
+            {
+                int size = keyframe.getSize();
+                sb.setLength(2); // Everything before a keyframe is superseded.
+                sb.append(" KEY ").append(size);
+                for (int b = 0; b < 2; b++) 
+                {
+                    sb.append(' ');
+                    for (int row = 0; row < size; row++) 
+                    {
+                        for (int col = 0; col < size; col++) 
+                        {
+                            sb.append(keyframe.getCellState(row, col, b == 0));
+                        }
+                    }
+                }
+            }
+            
+            @Override
+            public void shot(boolean playerBoard, int row, int col, boolean hit) 
+            {
+                sb.append(playerBoard ? " P " : " C ").append(row).append(' ').append(col)
+                  .append(hit ? " HIT" : " MISS");
+            }
+        }, max);
+        return sb.toString();
+    }
+    
+    private static String reply(String result) 
+    {
+        return result == null ? "ERR no such game" : result;
+    }
+    
+    /** Fires the player's shot and describes it and any reply; shared with HeadlessGame. */
+    static String shoot(BattleshipsGame game, int row, int col) 
+    {
+        if (game.isSalvo()) return "ERR salvo game: use SALVO";
+        int before = game.getLastComputerShot();
+        Board target = game.getComputerBoard();
+        if (!game.processPlayerShot(row, col)) 
+        {
+            return game.isGameOver() ? "ERR game over" : "ERR invalid shot";
+        }
+        StringBuilder sb = new StringBuilder("OK ").append(outcome(target, row, col));
+        int shot = game.getLastComputerShot();
+        if (shot != before) 
+        {
+            int size = game.getBoardSize();
+            sb.append(" REPLY ").append(shot / size).append(' ').append(shot % size).append(' ')
+              .append(outcome(game.getPlayerBoard(), shot / size, shot % size));
+        }
+        if (game.isGameOver()) sb.append("Player".equals(game.getWinner()) ? " WON" : " LOST");
+        return sb.toString();
+    }
+    
+    /**
+     * Reads the row and column pairs that end a command into packed shots.
+     * @throws ArrayIndexOutOfBoundsException if a column is missing.
+     * @throws IllegalArgumentException for a coordinate no board has, which
+     *         Board.pack would fold into another cell.
+     */
+    static int[] shots(String[] words, int from) 
+    {
+        int[] shots = new int[(words.length - from + 1) / 2];
+        for (int i = 0; i < shots.length; i++) 
+        {
+            int row = Integer.parseInt(words[from + 2 * i]);
+            int col = Integer.parseInt(words[from + 2 * i + 1]);
+            if (row < 0 || row >= Board.MAX_SIZE || col < 0 || col >= Board.MAX_SIZE) 
+            {
+                throw new IllegalArgumentException("invalid shot");
+            }
+            shots[i] = Board.pack(row, col);
+        }
+        return shots;
+    }
+    
+    /** Fires the player's salvo and describes it and the computer's; shared with HeadlessGame. */
+    static String salvo(BattleshipsGame game, int[] shots) 
+    {
+        if (!game.isSalvo()) return "ERR not a salvo game";
+        if (game.isGameOver()) return "ERR game over";
+        if (shots.length == 0 || shots.length > game.getSalvoSize()) 
+        {
+            return "ERR salvo must be 1 to " + game.getSalvoSize() + " shots";
+        }
+        if (!game.processPlayerSalvo(shots, shots.length)) return "ERR invalid shot";
+        StringBuilder sb = new StringBuilder("OK");
+        for (int result : game.getLastSalvoResults()) sb.append(' ').append(outcome(result));
+        boolean won = game.isGameOver() && "Player".equals(game.getWinner());
+        int[] reply = won ? new int[0] : game.getLastComputerSalvo(); // No reply once the player has won.
+        int[] replyResults = game.getLastComputerSalvoResults();
+        if (reply.length > 0) sb.append(" REPLY");
+        for (int i = 0; i < reply.length; i++) 
+        {
+            sb.append(' ').append(Board.rowOf(reply[i])).append(' ').append(Board.colOf(reply[i])).append(' ')
+              .append(outcome(replyResults[i]));
+        }
+        if (game.isGameOver()) sb.append(won ? " WON" : " LOST");
+        return sb.toString();
+    }
+    
+    /** Names a shot result coded as by Board.recordSalvo. */
+    private static String outcome(int result) 
+    {
+        if (result == Board.SHOT_MISS) return "MISS";
+        return (result & 1) != 0 ? "SUNK" : "HIT";
+    }
+    
+    private static String outcome(Board board, int row, int col) 
+    {
+        Ship ship = board.getShipAt(row, col);
+        if (ship == null) return "MISS";
+        return ship.isSunk() ? "SUNK" : "HIT";
+    }
+    
+    static String status(BattleshipsGame game) 
+    {
+        String turn = game.isGameOver() ? "OVER " + game.getWinner() 
+                      : game.isPlayerTurn() ? "PLAYER" : "COMPUTER";
+        return "OK " + game.getShotsFired() + " " + turn;
+    }
+    
+    static String board(BattleshipsGame game, boolean mine) 
+    {
+        int size = game.getBoardSize();
+        StringBuilder sb = new StringBuilder(size * size + 16).append("OK ").append(size).append(' ');
+        for (int row = 0; row < size; row++) 
+        {
+            for (int col = 0; col < size; col++) 
+            {
+                sb.append(game.getCellState(row, col, mine));
+            }
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Gets a thread-per-task executor: virtual threads on JVMs that have them,
+     * otherwise a cached pool of daemon platform threads.
+     */
+    private static ExecutorService newPerTaskExecutor() 
+    {
+        try 
+        {
+            return (ExecutorService) MethodHandles.publicLookup()
+                .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                .invoke();
+        } 
+        catch (Throwable e) 
+        {
+            return Executors.newCachedThreadPool(task -> 
+            {
+                Thread thread = new Thread(task, "game-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    /**
+     * Runs a server from the command line.
+     * Arguments: [port] [idle minutes before a session expires].
+     */
+    public static void main(String[] args) throws IOException 
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long expireMillis = (args.length > 1 ? Long.parseLong(args[1]) : 30) * 60_000;
+        GameMetrics.register();
+        try (SessionManager sessions = new SessionManager(Math.min(60_000, expireMillis), expireMillis);
+             GameServer server = new GameServer(port, sessions)) 
+        {
+            System.out.println("Battleships server listening on localhost:" + server.getPort());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * This class plays one game at a time over standard input and output, for
+ * scripts and bots. Commands, one per line, any case:
+ *   NEW [size] [seed] [SALVO]  -> OK seed
+ *   SHOOT row col              -> OK HIT|MISS|SUNK [REPLY row col HIT|MISS|SUNK] [WON|LOST]
+ *   SALVO row col...           -> OK HIT|MISS|SUNK... [REPLY row col HIT|MISS|SUNK...] [WON|LOST]
+ *   STATUS                     -> OK shots PLAYER|COMPUTER|OVER [winner]
+ *   BOARD MINE|THEIRS          -> OK size cells (row by row, no separators)
+ *   SAVE file                  -> OK
+ *   LOAD file                  -> OK
+ *   QUIT                       -> ends the session, as does end of input
+ * Failures answer ERR message. Replies match GameServer's. Output is only
+ * flushed when no more input is waiting, so a bot that pipelines commands
+ * gets its answers in large writes.
+ */
+public class HeadlessGame 
+{
+    private static final int BUFFER_CHARS = 1 << 16;
+    
+    private BattleshipsGame game;
+    
+    /**
+     * Serves commands until QUIT or end of input.
+     * The console sink is not used, so nothing but replies reaches the output.
+     */
+    public void run(Reader input, Writer output) throws IOException 
+    {
+        BufferedReader in = new BufferedReader(input, BUFFER_CHARS);
+        Writer out = new BufferedWriter(output, BUFFER_CHARS);
+        try 
+        {
+            String line;
+            while ((line = in.readLine()) != null) 
+            {
+                String[] words = GameServer.words(line);
+                if (words[0].isEmpty()) continue;
+                if (words[0].equalsIgnoreCase("QUIT")) break;
+                out.write(execute(words));
+                out.write('\n');
+                if (!in.ready()) out.flush(); // Pipelined commands are answered in one write.
+            }
+        } 
+        finally 
+        {
+            out.flush(); // Even if a command fails, earlier replies still go out.
+        }
+    }
+    
+    /** Runs one command and builds its reply line. */
+    String execute(String[] words) 
+    {
+        try 
+        {
+            switch (words[0].toUpperCase()) 
+            {
+                case "NEW":
+                    int size = words.length > 1 ? Integer.parseInt(words[1]) : Board.DEFAULT_SIZE;
+                    long seed = words.length > 2 ? Long.parseLong(words[2]) : new SplittableRandom().nextLong();
+                    BattleshipsGame created = new BattleshipsGame(size);
+                    created.setQuiet(true);
+                    created.setSalvo(words.length > 3 && words[3].equalsIgnoreCase("SALVO"));
+                    try 
+                    {
+                        created.startNewGame(seed);
+                    } 
+                    catch (IllegalStateException e) 
+                    {
+                        return "ERR fleet does not fit"; // Board too small; the current game carries on.
+                    }
+                    game = created;
+                    return "OK " + seed;
+                case "SHOOT":
+                    if (game == null) return "ERR no game";
+                    return GameServer.shoot(game, Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+                case "SALVO":
+                    if (game == null) return "ERR no game";
+                    return GameServer.salvo(game, GameServer.shots(words, 1));
+                case "STATUS":
+                    if (game == null) return "ERR no game";
+                    return GameServer.status(game);
+                case "BOARD":
+                    if (game == null) return "ERR no game";
+                    return GameServer.board(game, words[1].equalsIgnoreCase("MINE"));
+                case "SAVE":
+                    if (game == null) return "ERR no game";
+                    return game.saveGame(words[1]) ? "OK" : "ERR save failed";
+                case "LOAD":
+                    BattleshipsGame loaded = BattleshipsGame.loadGame(words[1]);
+                    if (loaded == null) return "ERR load failed";
+                    loaded.setQuiet(true);
+                    game = loaded;
+                    return "OK";
+                default:
+                    return "ERR unknown command " + words[0];
+            }
+        } 
+        catch (ArrayIndexOutOfBoundsException e) 
+        {
+            return "ERR missing argument";
+        } 
+        catch (IllegalArgumentException e) 
+        {
+            return "ERR " + e.getMessage();
+        }
+    }
+    
+    /** Plays over this process's standard input and output. */
+    public static void main(String[] args) throws IOException 
+    {
+        // Write straight to the descriptor: System.out would add its own locking and buffering.
+        Writer out = new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8);
+        new HeadlessGame().run(new InputStreamReader(System.in, StandardCharsets.UTF_8), out);
+    }
+}
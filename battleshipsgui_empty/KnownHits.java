@@ -0,0 +1,240 @@
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class works out what a shooter can know about the hits it has made.
+ * It hears only what a player hears: which shots hit and, when a shot sinks a
+ * ship, that ship's type. Which hits belong to a sunk ship is never read from
+ * the board; it is deduced from where a ship of that length could lie through
+ * the sinking shot on hit cells alone. Hits that are certainly on sunk ships
+ * are sunk; hits that may or may not be stay pending until later sinkings
+ * settle them; the rest are open and must be covered by ships still afloat.
+ */
+final class KnownHits implements Serializable 
+{
+    private static final long serialVersionUID = 1L;
+    
+    private final int size;
+    private final long[] hits;
+    private final long[] maybe; // Hits that may be on a ship whose sinking is not settled.
+    private final int[] owner;  // Sinking number + 1 for hits known to be on that sunk ship.
+    private int[] sinkCell = new int[8]; // Cell of each sinking shot, or -1 if not known.
+    private Ship.Type[] sinkType = new Ship.Type[8];
+    private boolean[] settled = new boolean[8];
+    private int sinkings;
+    private int hitCount;
+    private transient int[] tally;   // Scratch: candidate placements covering each cell.
+    private transient int[] tallied; // Scratch: cells with a tally, so only they are visited.
+    private transient int talliedCount;
+    private transient int[] doubt;   // Cells marked maybe, so only they are cleared.
+    private transient int doubtCount;
+    
+    /** This creates a record for a board with no shots yet. */
+    KnownHits(int size) 
+    {
+        this.size = size;
+        int words = (size * size + 63) >>> 6;
+        hits = new long[words];
+        maybe = new long[words];
+        owner = new int[size * size];
+    }
+    
+    /**
+     * Reads what a board's shots have shown so far: its hits, and the types of
+     * its sunk ships, which were announced as they went down. Where each sunk
+     * ship lay is worked out, not read.
+     */
+    static KnownHits fromBoard(Board board) 
+    {
+        int size = board.getSize();
+        KnownHits known = new KnownHits(size);
+        for (int cell = 0; cell < size * size; cell++) 
+        {
+            if (board.getCellState(cell / size, cell % size, false) == 'X') known.hit(cell);
+        }
+        for (int i = 0; i < board.getShipCount(); i++) 
+        {
+            Ship ship = board.getShip(i);
+            if (ship.isSunk()) known.sunk(-1, ship.getType()); // Sinking shot not known.
+        }
+        return known;
+    }
+    
+    /**
+     * Gets what the game announces about the latest shot at a cell.
+     * @return the type of ship that shot sank, or null if it sank none.
+     */
+    static Ship.Type sunkBy(Board board, int cell) 
+    {
+        Ship ship = board.getShipAt(cell / board.getSize(), cell % board.getSize());
+        return ship != null && ship.isSunk() ? ship.getType() : null;
+    }
+    
+    /** Records a hit. */
+    void hit(int cell) 
+    {
+        if (!isHit(cell)) hitCount++;
+        hits[cell >>> 6] |= 1L << cell;
+    }
+    
+    /**
+     * Records a sinking and settles what it shows.
+     * @param cell Cell of the shot that sank the ship, or -1 if not known.
+     */
+    void sunk(int cell, Ship.Type type) 
+    {
+        if (cell >= 0) hit(cell);
+        if (sinkings == sinkCell.length) 
+        {
+            sinkCell = Arrays.copyOf(sinkCell, sinkings * 2);
+            sinkType = Arrays.copyOf(sinkType, sinkings * 2);
+            settled = Arrays.copyOf(settled, sinkings * 2);
+        }
+        sinkCell[sinkings] = cell;
+        sinkType[sinkings] = type;
+        settled[sinkings++] = false;
+        settle();
+    }
+    
+    boolean isHit(int cell) 
+    {
+        return (hits[cell >>> 6] & (1L << cell)) != 0;
+    }
+    
+    /** Checks whether a hit is known to be on a sunk ship. */
+    boolean isSunk(int cell) 
+    {
+        return owner[cell] != 0;
+    }
+    
+    /** Checks whether a hit must be on a ship still afloat. */
+    boolean isOpen(int cell) 
+    {
+        return isHit(cell) && owner[cell] == 0 && (maybe[cell >>> 6] & (1L << cell)) == 0;
+    }
+    
+    /** Gets the number of cells hit. */
+    int getHitCount() 
+    {
+        return hitCount;
+    }
+    
+    /** Gets the number of ships announced sunk. */
+    int getSunkCount() 
+    {
+        return sinkings;
+    }
+    
+    Ship.Type getSunkType(int i) 
+    {
+        return sinkType[i];
+    }
+    
+    /**
+     * Lists where each unsettled sunk ship could lie: through its sinking shot,
+     * on hit cells not known to be another ship's. Cells every such place
+     * covers are that ship's; a ship with one place left is settled. Repeats
+     * until nothing changes, then marks the cells still in doubt as maybe.
+     * Only the cells the places cover are visited, so a sinking whose shot is
+     * known costs in its ship's length, not the board's size.
+     */
+    private void settle() 
+    {
+        if (tally == null) 
+        {
+            tally = new int[size * size];
+            tallied = new int[64];
+            doubt = new int[64];
+            Arrays.fill(maybe, 0); // Read back without its list of cells.
+        }
+        boolean changed = true;
+        while (changed) 
+        {
+            changed = false;
+            for (int i = 0; i < doubtCount; i++) maybe[doubt[i] >>> 6] &= ~(1L << doubt[i]);
+            doubtCount = 0;
+            for (int s = 0; s < sinkings; s++) 
+            {
+                if (settled[s]) continue;
+                int places = tallyPlaces(s);
+                if (places == 0) 
+                {
+                    // No place fits: the fleet is not the one expected. Keep what is certain.
+                    if (sinkCell[s] >= 0 && owner[sinkCell[s]] == 0) owner[sinkCell[s]] = s + 1;
+                    settled[s] = true;
+                    changed = true;
+                    continue;
+                }
+                for (int i = 0; i < talliedCount; i++) 
+                {
+                    int cell = tallied[i];
+                    if (tally[cell] == places && owner[cell] == 0) 
+                    {
+                        owner[cell] = s + 1;
+                        changed = true;
+                    } 
+                    else if (owner[cell] == 0 && (maybe[cell >>> 6] & (1L << cell)) == 0) 
+                    {
+                        maybe[cell >>> 6] |= 1L << cell;
+                        if (doubtCount == doubt.length) doubt = Arrays.copyOf(doubt, doubtCount * 2);
+                        doubt[doubtCount++] = cell;
+                    }
+                    tally[cell] = 0;
+                }
+                if (places == 1) 
+                {
+                    settled[s] = true;
+                    changed = true;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Counts, in tally, how many of the places sinking s could lie cover each
+     * cell, and lists the cells counted in tallied.
+     * @return the number of places.
+     */
+    private int tallyPlaces(int s) 
+    {
+        int length = sinkType[s].size;
+        int cell = sinkCell[s];
+        int places = 0;
+        talliedCount = 0;
+        for (int vertical = 0; vertical < (length == 1 ? 1 : 2); vertical++) 
+        {
+            int step = vertical == 1 ? size : 1;
+            // With the sinking shot known, places run through it; otherwise they start anywhere.
+            int lowest = cell >= 0 ? cell : 0;
+            int highest = cell >= 0 ? cell : size * size - 1;
+            for (int through = lowest; through <= highest; through++) 
+            {
+                int pos = vertical == 1 ? through / size : through % size;
+                int from = cell >= 0 ? Math.max(0, pos - length + 1) : pos;
+                for (int start = from; start <= Math.min(pos, size - length); start++) 
+                {
+                    int first = through - (pos - start) * step;
+                    if (!fits(first, length, step, s)) continue;
+                    places++;
+                    for (int i = 0, c = first; i < length; i++, c += step) 
+                    {
+                        if (tally[c]++ > 0) continue;
+                        if (talliedCount == tallied.length) tallied = Arrays.copyOf(tallied, talliedCount * 2);
+                        tallied[talliedCount++] = c;
+                    }
+                }
+            }
+        }
+        return places;
+    }
+    
+    /** Checks that every cell of a place is a hit not known to be on another ship. */
+    private boolean fits(int first, int length, int step, int s) 
+    {
+        for (int i = 0, c = first; i < length; i++, c += step) 
+        {
+            if (!isHit(c) || (owner[c] != 0 && owner[c] != s + 1)) return false;
+        }
+        return true;
+    }
+}
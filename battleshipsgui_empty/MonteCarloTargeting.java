@@ -0,0 +1,302 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class targets by sampling whole fleet layouts.
+ * Each move, every core draws random layouts of the ships still afloat that avoid
+ * known misses and sunk ships and cover every open hit, counting how often each
+ * unknown cell holds a ship. Sunk ships and the hits they covered are worked out
+ * by KnownHits from the announced sinkings; hits that may belong to either a
+ * sunk ship or one afloat are neither avoided nor required. Sampling stops at a fixed time budget and the most
+ * often covered cell is fired at, so a turn never waits longer than the budget.
+ * If no consistent layout turns up in time, the density map answers instead.
+ */
+public class MonteCarloTargeting implements TargetingStrategy, Serializable 
+{
+    private static final long serialVersionUID = 1L;
+    
+    public static final long DEFAULT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    
+    private static final byte UNKNOWN = 0;
+    private static final byte BLOCKED = 1;  // Miss, or part of a sunk ship.
+    private static final byte OPEN_HIT = 2; // Hit on a ship still afloat.
+    private static final byte MAYBE_HIT = 3; // Hit that may be on a sunk ship.
+    private static final int TRIES_PER_SHIP = 64;
+    private static final long GRACE_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /** Shared sampling threads; daemons so they never keep the JVM alive. */
+    private static final ExecutorService SAMPLERS = Executors.newFixedThreadPool(THREADS, task -> 
+    {
+        Thread thread = new Thread(task, "monte-carlo-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final long budgetNanos;
+    private final DensityTargeting fallback;
+    private final Ship.Type[] fleet;
+    private final List<Integer> afloat = new ArrayList<>(); // Lengths of ships not yet sunk.
+    
+    private int size;
+    private byte[] cells;
+    private int lastShot = -1;
+    private long samples; // Consistent layouts drawn over the game.
+    
+    /** This creates a strategy with the default 5 ms budget against the standard fleet. */
+    public MonteCarloTargeting() 
+    {
+        this(DEFAULT_BUDGET_NANOS, Player.FLEET);
+    }
+    
+    /**
+     * This creates a strategy.
+     * @param budgetNanos Time allowed for sampling on each move.
+     * @param fleet One entry per opposing ship.
+     */
+    public MonteCarloTargeting(long budgetNanos, Ship.Type[] fleet) 
+    {
+        this.budgetNanos = budgetNanos;
+        this.fallback = new DensityTargeting(fleet);
+        this.fleet = fleet.clone();
+    }
+    
+    @Override
+    public int nextShot(Board opponentBoard) 
+    {
+        fallback.observe(opponentBoard); // Learns any sinking, and keeps the fallback in step.
+        if (cells == null) initialize(opponentBoard);
+        if (lastShot >= 0 && cells[lastShot] != BLOCKED) refreshHits();
+        
+        int[] counts = sample(System.nanoTime() + budgetNanos);
+        int best = -1;
+        if (counts != null) 
+        {
+            for (int cell = 0; cell < cells.length; cell++) 
+            {
+                if (cells[cell] == UNKNOWN && (best < 0 || counts[cell] > counts[best])) best = cell;
+            }
+        }
+        if (best < 0 || counts[best] == 0) return fallback.nextShot(opponentBoard);
+        return Board.pack(best / size, best % size);
+    }
+    
+    @Override
+    public void recordShotResult(int row, int col, boolean wasHit) 
+    {
+        fallback.recordShotResult(row, col, wasHit);
+        if (cells == null) return;
+        lastShot = row * size + col;
+        cells[lastShot] = wasHit ? OPEN_HIT : BLOCKED;
+    }
+    
+    /** Gets how many consistent layouts have been drawn so far this game. */
+    public long getSamples() 
+    { 
+        return samples; 
+    }
+    
+    /** Reads the shots already on the board. */
+    private void initialize(Board board) 
+    {
+        size = board.getSize();
+        cells = new byte[size * size];
+        for (int cell = 0; cell < cells.length; cell++) 
+        {
+            if (board.getCellState(cell / size, cell % size, false) == 'O') cells[cell] = BLOCKED;
+        }
+        refreshHits();
+    }
+    
+    /** Sorts the hits into sunk, open and maybe, and the fleet into ships sunk and afloat, from what is known. */
+    private void refreshHits() 
+    {
+        KnownHits known = fallback.getKnownHits();
+        for (int cell = 0; cell < cells.length; cell++) 
+        {
+            if (!known.isHit(cell)) continue;
+            cells[cell] = known.isSunk(cell) ? BLOCKED : known.isOpen(cell) ? OPEN_HIT : MAYBE_HIT;
+        }
+        afloat.clear();
+        for (Ship.Type type : fleet) 
+        {
+            afloat.add(type.size);
+        }
+        for (int i = 0; i < known.getSunkCount(); i++) 
+        {
+            afloat.remove(Integer.valueOf(known.getSunkType(i).size));
+        }
+        afloat.sort((a, b) -> b - a); // Longest first; they are hardest to fit.
+    }
+    
+    /**
+     * Runs one sampler per thread until the deadline and merges what finished in time.
+     * @return ship counts per cell, or null if nothing came back.
+     */
+    private int[] sample(long deadline) 
+    {
+        int[] lengths = afloat.stream().mapToInt(Integer::intValue).toArray();
+        int[] openHits = openHits();
+        List<Future<int[]>> workers = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) 
+        {
+            workers.add(SAMPLERS.submit(() -> new Sampler(lengths, openHits).run(deadline)));
+        }
+        
+        int[] total = null;
+        for (Future<int[]> worker : workers) 
+        {
+            try 
+            {
+                long wait = Math.max(0, deadline + GRACE_NANOS - System.nanoTime());
+                int[] counts = worker.get(wait, TimeUnit.NANOSECONDS);
+                samples += counts[counts.length - 1];
+                if (total == null) 
+                {
+                    total = counts;
+                    continue;
+                }
+                for (int cell = 0; cell < cells.length; cell++) 
+                {
+                    total[cell] += counts[cell];
+                }
+            } 
+            catch (TimeoutException e) 
+            {
+                worker.cancel(true); // Late; the move goes ahead without it.
+            } 
+            catch (InterruptedException e) 
+            {
+                Thread.currentThread().interrupt();
+                break;
+            } 
+            catch (ExecutionException e) 
+            {
+                throw new IllegalStateException("Sampler failed", e.getCause());
+            }
+        }
+        return total;
+    }
+    
+    private int[] openHits() 
+    {
+        int count = 0;
+        for (byte state : cells) 
+        {
+            if (state == OPEN_HIT) count++;
+        }
+        int[] hits = new int[count];
+        for (int cell = 0, i = 0; cell < cells.length; cell++) 
+        {
+            if (cells[cell] == OPEN_HIT) hits[i++] = cell;
+        }
+        return hits;
+    }
+    
+    /** One thread's sampling loop, with its own scratch space. */
+    private class Sampler 
+    {
+        private final int[] lengths;
+        private final int[] openHits;
+        private final int[] counts = new int[cells.length + 1]; // Last slot: layouts accepted.
+        private final long[] taken = new long[(cells.length + 63) >>> 6];
+        private final int[] placed = new int[cells.length];
+        
+        Sampler(int[] lengths, int[] openHits) 
+        {
+            this.lengths = lengths;
+            this.openHits = openHits;
+        }
+        
+        private int placedCount;
+        
+        int[] run(long deadline) 
+        {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) 
+            {
+                boolean consistent = layout(rand);
+                for (int i = 0; i < placedCount; i++) 
+                {
+                    if (consistent) counts[placed[i]]++;
+                    taken[placed[i] >>> 6] = 0; // Only placed cells are ever set.
+                }
+                if (consistent) counts[cells.length]++;
+            }
+            return counts;
+        }
+        
+        /**
+         * Draws one layout into taken and placed.
+         * @return true if every ship fitted and every open hit is covered.
+         */
+        private boolean layout(ThreadLocalRandom rand) 
+        {
+            placedCount = 0;
+            for (int length : lengths) 
+            {
+                int uncovered = firstUncoveredHit();
+                boolean fitted = false;
+                for (int attempt = 0; attempt < TRIES_PER_SHIP && !fitted; attempt++) 
+                {
+                    boolean vertical = rand.nextBoolean();
+                    int row;
+                    int col;
+                    if (uncovered >= 0 && length > 1) 
+                    {
+                        // Lay the ship across an open hit.
+                        int back = rand.nextInt(length);
+                        row = uncovered / size - (vertical ? back : 0);
+                        col = uncovered % size - (vertical ? 0 : back);
+                    } 
+                    else 
+                    {
+                        row = rand.nextInt(size);
+                        col = rand.nextInt(size);
+                    }
+                    fitted = fits(row, col, length, vertical);
+                    if (fitted) 
+                    {
+                        int step = vertical ? size : 1;
+                        for (int i = 0, cell = row * size + col; i < length; i++, cell += step) 
+                        {
+                            taken[cell >>> 6] |= 1L << cell;
+                            placed[placedCount++] = cell;
+                        }
+                    }
+                }
+                if (!fitted) return false;
+            }
+            return firstUncoveredHit() < 0;
+        }
+        
+        private boolean fits(int row, int col, int length, boolean vertical) 
+        {
+            if (row < 0 || col < 0) return false;
+            if (vertical ? row + length > size : col + length > size) return false;
+            int step = vertical ? size : 1;
+            for (int i = 0, cell = row * size + col; i < length; i++, cell += step) 
+            {
+                if (cells[cell] == BLOCKED || (taken[cell >>> 6] & (1L << cell)) != 0) return false;
+            }
+            return true;
+        }
+        
+        private int firstUncoveredHit() 
+        {
+            for (int hit : openHits) 
+            {
+                if ((taken[hit >>> 6] & (1L << hit)) == 0) return hit;
+            }
+            return -1;
+        }
+    }
+}
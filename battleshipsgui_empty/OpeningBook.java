@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is a read-only table of opening shots, built offline by
+ * OpeningBookBuilder. For each board size and fleet it holds a line of
+ * cells: the best first shot, then the best shot given that every earlier
+ * shot in the line missed. A player follows the line until its first hit.
+ * A book file is memory-mapped, so a lookup is one absolute read from shared
+ * pages and any number of games, threads or JVMs can use one copy.
+ *
+ * Layout (big-endian): magic, version, line count, then per line a 16-byte
+ * header (board size, ship count per Ship.Type ordinal as 4 bytes, depth,
+ * byte offset of its cells), then every line's cells as ints.
+ */
+public class OpeningBook 
+{
+    static final int MAGIC = 0x42534F42; // "BSOB"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int LINE_BYTES = 16;
+    
+    /** Book used by computer players when none is set: a classpath resource; see getDefault. */
+    public static final String DEFAULT_FILENAME = "opening_book.dat";
+    
+    private final ByteBuffer table;
+    private final int lines;
+    
+    private OpeningBook(ByteBuffer table) throws IOException 
+    {
+        this.table = table;
+        if (table.capacity() < HEADER_BYTES || table.getInt(0) != MAGIC) 
+        {
+            throw new IOException("Not an opening book");
+        }
+        if (table.getShort(4) != VERSION) throw new IOException("Unsupported opening book version " + table.getShort(4));
+        lines = table.getShort(6);
+        if (lines < 0 || HEADER_BYTES + (long) lines * LINE_BYTES > table.capacity()) throw new IOException("Opening book is truncated");
+        
+        // Check every cell once here, so lookups need no checks.
+        for (int i = 0; i < lines; i++) 
+        {
+            int at = HEADER_BYTES + i * LINE_BYTES;
+            long size = table.getInt(at);
+            int depth = table.getInt(at + 8);
+            int offset = table.getInt(at + 12);
+            if (size < 1 || size > Board.MAX_SIZE || depth < 0 || offset < 0 
+                || offset + 4L * depth > table.capacity()) 
+            {
+                throw new IOException("Bad opening book line " + i);
+            }
+            for (int shot = 0; shot < depth; shot++) 
+            {
+                int cell = table.getInt(offset + 4 * shot);
+                if (cell < 0 || cell >= size * size) throw new IOException("Bad cell in opening book line " + i);
+            }
+        }
+    }
+    
+    /**
+     * Maps an opening book file read-only.
+     * @throws IOException if it cannot be read or is not a valid book.
+     */
+    public static OpeningBook open(Path file) throws IOException 
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) 
+        {
+            // The mapping stays valid after the channel is closed.
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    /**
+     * Gets the shared default book: the file named by -Dbattleships.book, or
+     * DEFAULT_FILENAME on the classpath. The working directory is never
+     * searched, so play does not depend on where the JVM was started.
+     * Loaded once, on first use. Either is mapped like any book file, unless
+     * the resource is packed in a jar, when it is copied into memory instead.
+     * @return the book, or null if there is none or it cannot be read.
+     */
+    public static OpeningBook getDefault() 
+    {
+        return DefaultBook.BOOK;
+    }
+    
+    /** Holds the default book; the JVM loads it on first access without locking afterwards. */
+    private static final class DefaultBook 
+    {
+        static final OpeningBook BOOK = load();
+        
+        private static OpeningBook load() 
+        {
+            String file = System.getProperty("battleships.book");
+            try 
+            {
+                if (file != null) return open(Path.of(file));
+                URL resource = OpeningBook.class.getResource("/" + DEFAULT_FILENAME);
+                if (resource == null) return null;
+                if (isFile(resource)) return open(Path.of(resource.toURI()));
+                try (InputStream in = resource.openStream()) 
+                {
+                    byte[] bytes = in.readAllBytes(); // Inside a jar: there is no file to map.
+                    return new OpeningBook(ByteBuffer.allocateDirect(bytes.length).put(bytes));
+                }
+            } 
+            catch (IOException | URISyntaxException e) 
+            {
+                System.err.println("Error loading opening book: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Gets the file getDefault reads: the -Dbattleships.book file, or
+     * DEFAULT_FILENAME on the classpath, or where it would go in the
+     * classpath directory holding this class if there is none yet.
+     * @return the file, or null if the book would be inside a jar.
+     */
+    static Path getDefaultLocation() 
+    {
+        String file = System.getProperty("battleships.book");
+        if (file != null) return Path.of(file);
+        try 
+        {
+            URL resource = OpeningBook.class.getResource("/" + DEFAULT_FILENAME);
+            if (resource != null) return isFile(resource) ? Path.of(resource.toURI()) : null;
+            URL classes = OpeningBook.class.getProtectionDomain().getCodeSource().getLocation();
+            if (!isFile(classes)) return null;
+            Path dir = Path.of(classes.toURI());
+            return Files.isDirectory(dir) ? dir.resolve(DEFAULT_FILENAME) : null;
+        } 
+        catch (URISyntaxException | SecurityException e) 
+        {
+            return null;
+        }
+    }
+    
+    private static boolean isFile(URL url) 
+    {
+        return "file".equals(url.getProtocol());
+    }
+    
+    /**
+     * Finds the line for a board size and fleet.
+     * @return the line, or null if the book does not cover them.
+     */
+    public Line find(int boardSize, Ship.Type[] fleet) 
+    {
+        byte[] counts = fleetCounts(fleet);
+        for (int i = 0; i < lines; i++) 
+        {
+            int at = HEADER_BYTES + i * LINE_BYTES;
+            if (table.getInt(at) != boardSize) continue;
+            boolean match = true;
+            for (int type = 0; type < counts.length; type++) 
+            {
+                match &= table.get(at + 4 + type) == counts[type];
+            }
+            if (match) return new Line(table, boardSize, table.getInt(at + 8), table.getInt(at + 12));
+        }
+        return null;
+    }
+    
+    /** Gets the number of lines in the book. */
+    public int getLineCount() 
+    {
+        return lines;
+    }
+    
+    /** Counts ships per Ship.Type ordinal, as stored in line headers. */
+    static byte[] fleetCounts(Ship.Type[] fleet) 
+    {
+        byte[] counts = new byte[4];
+        for (Ship.Type type : fleet) 
+        {
+            counts[type.ordinal()]++;
+        }
+        return counts;
+    }
+    
+    /** This class is one line of the book: a view onto the mapped table. */
+    public static final class Line 
+    {
+        private final ByteBuffer table;
+        private final int boardSize;
+        private final int depth;
+        private final int offset;
+        
+        Line(ByteBuffer table, int boardSize, int depth, int offset) 
+        {
+            this.table = table;
+            this.boardSize = boardSize;
+            this.depth = depth;
+            this.offset = offset;
+        }
+        
+        /** Gets how many shots the line holds. */
+        public int getDepth() 
+        {
+            return depth;
+        }
+        
+        /** Gets the shot at a position in the line, packed with Board.pack. */
+        public int getShot(int index) 
+        {
+            int cell = table.getInt(offset + 4 * index);
+            return Board.pack(cell / boardSize, cell % boardSize);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This class builds OpeningBook files offline.
+ * A line is worked out from a large sample of random fleets drawn the way
+ * players place them: the first shot is the cell covered by the most fleets,
+ * then the fleets it would have hit are dropped and the next shot is the most
+ * covered cell among those left, and so on. The line stops at the chosen
+ * depth or when too few fleets remain to say anything.
+ */
+public class OpeningBookBuilder 
+{
+    public static final int DEFAULT_SAMPLES = 200_000;
+    public static final int DEFAULT_DEPTH = 24;
+    private static final int MIN_FLEETS = 500; // Fewer left than this and counts are noise.
+    
+    private final List<Integer> sizes = new ArrayList<>();
+    private final List<Ship.Type[]> fleets = new ArrayList<>();
+    private final List<int[]> cells = new ArrayList<>();
+    
+    /**
+     * Works out and adds the line for a board size and fleet.
+     * @param samples Random fleets to draw.
+     * @param depth Most shots in the line.
+     * @param seed Seed for the sample, so a book can be rebuilt exactly.
+     * @return the line's cells, row * size + col.
+     */
+    public int[] addLine(int boardSize, Ship.Type[] fleet, int samples, int depth, long seed) 
+    {
+        int[] line = computeLine(boardSize, fleet, samples, depth, seed);
+        sizes.add(boardSize);
+        fleets.add(fleet.clone());
+        cells.add(line);
+        return line;
+    }
+    
+    /** Writes the book, replacing the file in one step. */
+    public void write(Path file) throws IOException 
+    {
+        int bytes = OpeningBook.HEADER_BYTES + sizes.size() * OpeningBook.LINE_BYTES;
+        for (int[] line : cells) bytes += 4 * line.length;
+        ByteBuffer out = ByteBuffer.allocate(bytes);
+        out.putInt(OpeningBook.MAGIC);
+        out.putShort(OpeningBook.VERSION);
+        out.putShort((short) sizes.size());
+        int offset = OpeningBook.HEADER_BYTES + sizes.size() * OpeningBook.LINE_BYTES;
+        for (int i = 0; i < sizes.size(); i++) 
+        {
+            out.putInt(sizes.get(i));
+            out.put(OpeningBook.fleetCounts(fleets.get(i)));
+            out.putInt(cells.get(i).length);
+            out.putInt(offset);
+            offset += 4 * cells.get(i).length;
+        }
+        for (int[] line : cells) 
+        {
+            for (int cell : line) out.putInt(cell);
+        }
+        out.flip();
+        
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) 
+        {
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /** Works out one line; see the class comment. */
+    static int[] computeLine(int boardSize, Ship.Type[] fleet, int samples, int depth, long seed) 
+    {
+        int shipCells = 0;
+        for (Ship.Type type : fleet) shipCells += type.size;
+        
+        // Draw the sample and flatten each fleet to the cells it covers.
+        int[] placements = new int[samples * fleet.length];
+        samples = new PlacementEngine(boardSize).sampleFleets(fleet, samples, new SplittableRandom(seed), placements);
+        int[] covered = new int[samples * shipCells];
+        for (int f = 0, c = 0; f < samples; f++) 
+        {
+            for (int s = 0; s < fleet.length; s++) 
+            {
+                int placement = placements[f * fleet.length + s];
+                int step = PlacementEngine.isVertical(placement) ? boardSize : 1;
+                for (int i = 0, cell = PlacementEngine.cellOf(placement); i < fleet[s].size; i++, cell += step) 
+                {
+                    covered[c++] = cell;
+                }
+            }
+        }
+        
+        int[] alive = new int[samples]; // Fleets every shot so far would have missed.
+        for (int f = 0; f < samples; f++) alive[f] = f;
+        int aliveCount = samples;
+        int[] counts = new int[boardSize * boardSize];
+        int[] line = new int[depth];
+        int length = 0;
+        while (length < depth && aliveCount >= MIN_FLEETS) 
+        {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < aliveCount; i++) 
+            {
+                for (int c = alive[i] * shipCells, end = c + shipCells; c < end; c++) counts[covered[c]]++;
+            }
+            int best = 0;
+            for (int cell = 1; cell < counts.length; cell++) 
+            {
+                if (counts[cell] > counts[best]) best = cell;
+            }
+            if (counts[best] == 0) break;
+            line[length++] = best;
+            
+            // Keep the fleets this shot misses.
+            int kept = 0;
+            for (int i = 0; i < aliveCount; i++) 
+            {
+                boolean hit = false;
+                for (int c = alive[i] * shipCells, end = c + shipCells; c < end && !hit; c++) hit = covered[c] == best;
+                if (!hit) alive[kept++] = alive[i];
+            }
+            aliveCount = kept;
+        }
+        return Arrays.copyOf(line, length);
+    }
+    
+    /**
+     * Builds a book for the standard fleet from the command line.
+     * Arguments: [file] [samples] [depth] [board sizes...]; sizes default to 10.
+     * The file defaults to the one OpeningBook.getDefault reads.
+     */
+    public static void main(String[] args) throws IOException 
+    {
+        Path file = args.length > 0 ? Path.of(args[0]) : OpeningBook.getDefaultLocation();
+        if (file == null) 
+        {
+            System.err.println("The default book is inside a jar; name a file to write and use -Dbattleships.book.");
+            return;
+        }
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SAMPLES;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        for (int i = 3; i < Math.max(args.length, 4); i++) 
+        {
+            int size = i < args.length ? Integer.parseInt(args[i]) : Board.DEFAULT_SIZE;
+            int[] line = builder.addLine(size, Player.FLEET, samples, depth, size);
+            System.out.println(size + "x" + size + ": " + line.length + " opening shots");
+        }
+        builder.write(file);
+        System.out.println("Wrote " + file);
+        if (!file.equals(OpeningBook.getDefaultLocation())) 
+        {
+            System.out.println("Copy it to " + OpeningBook.DEFAULT_FILENAME + " in the project, or run with -Dbattleships.book=" + file);
+        }
+    }
+}
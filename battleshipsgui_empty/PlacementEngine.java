@@ -0,0 +1,291 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * This class places whole fleets at random without trial and error.
+ * For every ship length it keeps bitmasks of the legal starting cells, one for
+ * ships running right and one for ships running down. A placement is drawn
+ * uniformly from the set bits, and placing a ship clears only the starts that
+ * would now overlap it. A fleet is planned in full before anything touches the
+ * board; if an early ship leaves no room for a later one the plan restarts,
+ * a bounded number of times, so placement either succeeds or fails loudly.
+ * Placements are packed as (row * size + col) << 1 | vertical.
+ * An engine is not thread-safe; they are cheap, so use one per thread.
+ */
+public class PlacementEngine 
+{
+    public static final int MAX_RESTARTS = 1000;
+    
+    private final int size;
+    private final int words;
+    private final long[][] baseRight; // Legal starts per length on the starting board.
+    private final long[][] baseDown;
+    private final int[] baseRightCount;
+    private final int[] baseDownCount;
+    private final long[][] right;     // Legal starts per length while planning a fleet.
+    private final long[][] down;
+    private final int[] rightCount;
+    private final int[] downCount;
+    
+    /** This creates an engine for an empty board. */
+    public PlacementEngine(int size) 
+    {
+        this(size, null);
+    }
+    
+    /** This creates an engine that works around the ships already on a board. */
+    public PlacementEngine(Board board) 
+    {
+        this(board.getSize(), board);
+    }
+    
+    private PlacementEngine(int size, Board board) 
+    {
+        this.size = size;
+        this.words = (size * size + 63) >>> 6;
+        int lengths = 0;
+        for (Ship.Type type : Ship.Type.values()) 
+        {
+            lengths = Math.max(lengths, type.size + 1);
+        }
+        baseRight = new long[lengths][words];
+        baseDown = new long[lengths][words];
+        baseRightCount = new int[lengths];
+        baseDownCount = new int[lengths];
+        right = new long[lengths][words];
+        down = new long[lengths][words];
+        rightCount = new int[lengths];
+        downCount = new int[lengths];
+        
+        boolean[] occupied = new boolean[size * size];
+        if (board != null) 
+        {
+            for (int cell = 0; cell < occupied.length; cell++) 
+            {
+                occupied[cell] = board.getShipAt(cell / size, cell % size) != null;
+            }
+        }
+        for (int length = 1; length < lengths; length++) 
+        {
+            for (int row = 0; row < size; row++) 
+            {
+                for (int col = 0; col < size; col++) 
+                {
+                    int cell = row * size + col;
+                    if (col + length <= size && isClear(occupied, cell, length, 1)) 
+                    {
+                        baseRight[length][cell >>> 6] |= 1L << cell;
+                        baseRightCount[length]++;
+                    }
+                    // A one-cell ship has a single orientation; count it once.
+                    if (length > 1 && row + length <= size && isClear(occupied, cell, length, size)) 
+                    {
+                        baseDown[length][cell >>> 6] |= 1L << cell;
+                        baseDownCount[length]++;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Places a whole fleet on a board, naming ships by their Ship.Type order.
+     * The engine must have been made from this board.
+     * @throws IllegalStateException if the fleet does not fit.
+     */
+    public void placeFleet(Board board, Ship.Type[] fleet, String[] names, RandomGenerator rand) 
+    {
+        int[] plan = new int[fleet.length];
+        if (!planFleet(fleet, lengthsAfter(fleet), rand, plan, 0)) 
+        {
+            throw new IllegalStateException("Fleet does not fit on a " + size + "x" + size + " board");
+        }
+        for (int i = 0; i < fleet.length; i++) 
+        {
+            int cell = plan[i] >>> 1;
+            if (!board.placeShip(cell / size, cell % size, fleet[i], names[fleet[i].ordinal()], (plan[i] & 1) != 0)) 
+            {
+                throw new IllegalStateException("Board changed since the engine was made");
+            }
+        }
+    }
+    
+    /**
+     * Generates many random fleets without building boards, e.g. for simulations.
+     * @param out Receives fleet.length packed placements per fleet, fleet after fleet.
+     * @return number of fleets written; fewer than count only if the fleet does not fit.
+     */
+    public int sampleFleets(Ship.Type[] fleet, int count, RandomGenerator rand, int[] out) 
+    {
+        int[] later = lengthsAfter(fleet);
+        for (int i = 0; i < count; i++) 
+        {
+            if (!planFleet(fleet, later, rand, out, i * fleet.length)) return i;
+        }
+        return count;
+    }
+    
+    /** Gets the start cell (row * size + col) of a packed placement. */
+    public static int cellOf(int placement) 
+    {
+        return placement >>> 1;
+    }
+    
+    /** Gets whether a packed placement runs down the board. */
+    public static boolean isVertical(int placement) 
+    {
+        return (placement & 1) != 0;
+    }
+    
+    /**
+     * Works out which ship lengths are still to come after each ship of a fleet,
+     * as a bit set: bit n set means a ship of length n follows. The extra last
+     * entry holds every length in the fleet.
+     */
+    private static int[] lengthsAfter(Ship.Type[] fleet) 
+    {
+        int[] later = new int[fleet.length + 1];
+        int lengths = 0;
+        for (int i = fleet.length - 1; i >= 0; i--) 
+        {
+            later[i] = lengths;
+            lengths |= 1 << fleet[i].size;
+        }
+        later[fleet.length] = lengths;
+        return later;
+    }
+    
+    /**
+     * Plans one fleet into out[from..from + fleet.length).
+     * Only the masks for lengths still to come are kept up to date.
+     * @return false if no plan was found within MAX_RESTARTS.
+     */
+    private boolean planFleet(Ship.Type[] fleet, int[] later, RandomGenerator rand, int[] out, int from) 
+    {
+        for (int attempt = 0; attempt <= MAX_RESTARTS; attempt++) 
+        {
+            reset(later[fleet.length]);
+            int i = 0;
+            while (i < fleet.length) 
+            {
+                int placement = choose(fleet[i].size, rand);
+                if (placement < 0) break; // Dead end: start the fleet again.
+                occupy(placement >>> 1, fleet[i].size, (placement & 1) != 0, later[i]);
+                out[from + i++] = placement;
+            }
+            if (i == fleet.length) 
+            {
+                GameMetrics.countPlacementRetries(attempt);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void reset(int lengths) 
+    {
+        for (int length = 1; length < right.length; length++) 
+        {
+            if ((lengths & (1 << length)) == 0) continue;
+            System.arraycopy(baseRight[length], 0, right[length], 0, words);
+            System.arraycopy(baseDown[length], 0, down[length], 0, words);
+            rightCount[length] = baseRightCount[length];
+            downCount[length] = baseDownCount[length];
+        }
+    }
+    
+    /** Draws a legal placement uniformly, or -1 if there is none. */
+    private int choose(int length, RandomGenerator rand) 
+    {
+        int total = rightCount[length] + downCount[length];
+        if (total == 0) return -1;
+        int k = rand.nextInt(total);
+        if (k < rightCount[length]) return selectBit(right[length], k) << 1;
+        return selectBit(down[length], k - rightCount[length]) << 1 | 1;
+    }
+    
+    /**
+     * Clears every start, of every length, that would overlap a newly placed ship.
+     * Within a row the affected starts are contiguous, so whole runs are cleared at once.
+     */
+    private void occupy(int start, int shipLength, boolean vertical, int lengths) 
+    {
+        int row = start / size;
+        int col = start % size;
+        for (int length = 1; length < right.length; length++) 
+        {
+            if ((lengths & (1 << length)) == 0) continue;
+            int firstRow = Math.max(0, row - length + 1);
+            int firstCol = Math.max(0, col - length + 1);
+            if (vertical) 
+            {
+                for (int r = row; r < row + shipLength; r++) 
+                {
+                    rightCount[length] -= clearRun(right[length], r * size + firstCol, r * size + col);
+                }
+                for (int r = firstRow; r < row + shipLength; r++) 
+                {
+                    int bit = r * size + col;
+                    if ((down[length][bit >>> 6] & (1L << bit)) != 0) 
+                    {
+                        down[length][bit >>> 6] &= ~(1L << bit);
+                        downCount[length]--;
+                    }
+                }
+            } 
+            else 
+            {
+                int last = start + shipLength - 1;
+                rightCount[length] -= clearRun(right[length], row * size + firstCol, last);
+                for (int r = firstRow; r <= row; r++) 
+                {
+                    downCount[length] -= clearRun(down[length], r * size + col, r * size + col + shipLength - 1);
+                }
+            }
+        }
+    }
+    
+    /** Clears bits from..to inclusive. @return how many were set. */
+    private static int clearRun(long[] mask, int from, int to) 
+    {
+        int removed = 0;
+        while (from <= to) 
+        {
+            int w = from >>> 6;
+            int end = Math.min(to, (w << 6) | 63);
+            long run = (-1L >>> (63 - (end - from))) << from;
+            removed += Long.bitCount(mask[w] & run);
+            mask[w] &= ~run;
+            from = end + 1;
+        }
+        return removed;
+    }
+    
+    /** Finds the index of the k-th set bit (from 0). */
+    private static int selectBit(long[] mask, int k) 
+    {
+        for (int w = 0; ; w++) 
+        {
+            long word = mask[w];
+            int bits = Long.bitCount(word);
+            if (k >= bits) 
+            {
+                k -= bits;
+                continue;
+            }
+            for (; k > 0; k--) 
+            {
+                word &= word - 1; // Drop the lowest set bit.
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+    }
+    
+    private static boolean isClear(boolean[] occupied, int first, int length, int step) 
+    {
+        for (int i = 0; i < length; i++) 
+        {
+            if (occupied[first + i * step]) return false;
+        }
+        return true;
+    }
+}
@@ -1,5 +1,5 @@
 import java.io.Serializable;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This is the base class for human and computer players.
@@ -9,52 +9,52 @@ public class Player implements Serializable
 {
     private static final long serialVersionUID = 1L;
     
+    /** The standard fleet: 1 battleship, 2 cruisers, 3 destroyers, 3 submarines. */
+    public static final Ship.Type[] FLEET = 
+    {
+        Ship.Type.BATTLESHIP,
+        Ship.Type.CRUISER, Ship.Type.CRUISER,
+        Ship.Type.DESTROYER, Ship.Type.DESTROYER, Ship.Type.DESTROYER,
+        Ship.Type.SUBMARINE, Ship.Type.SUBMARINE, Ship.Type.SUBMARINE
+    };
+    
     protected String name;
     protected Board board;
     protected String[] shipNames;
+    protected transient SplittableRandom random; // Not shared with other players or threads.
     
     /**
-     * This creates a new player.
+     * This creates a new player with unseeded randomness.
      * @param name Player name.
      * @param board Associated game board.
      * @param shipNames Names for ship types.
      */
     public Player(String name, Board board, String[] shipNames) 
+    {
+        this(name, board, shipNames, new SplittableRandom());
+    }
+    
+    /**
+     * This creates a new player whose choices all come from one random stream,
+     * so a player built from the same seed places the same fleet.
+     * @param random Stream owned by this player from now on.
+     */
+    public Player(String name, Board board, String[] shipNames, SplittableRandom random) 
     {
         this.name = name;
         this.board = board;
         this.shipNames = shipNames;
+        this.random = random;
     }
     
-    /** Places all ships randomly on the board. */
+    /**
+     * Places all ships randomly on the board.
+     * @throws IllegalStateException if the fleet cannot fit on the board.
+     */
     public void placeShips() 
     {
-        placeShip(Ship.Type.BATTLESHIP, shipNames[0]); // 1x Battleship
-        placeShip(Ship.Type.CRUISER, shipNames[1]);    // 2x Cruisers
-        placeShip(Ship.Type.CRUISER, shipNames[1]);
-        placeShip(Ship.Type.DESTROYER, shipNames[2]);  // 3x Destroyers
-        placeShip(Ship.Type.DESTROYER, shipNames[2]);
-        placeShip(Ship.Type.DESTROYER, shipNames[2]);
-        placeShip(Ship.Type.SUBMARINE, shipNames[3]);   // 3x Submarines
-        placeShip(Ship.Type.SUBMARINE, shipNames[3]);
-        placeShip(Ship.Type.SUBMARINE, shipNames[3]);
-    }
-    
-    /** Attempts to place a single ship with random positioning. */
-    private void placeShip(Ship.Type type, String name) 
-    {
-        Random rand = new Random();
-        boolean placed = false;
-        int attempts = 0;
-        
-        // Try random positions until successful or max attempts.
-        while (!placed && attempts < 100) 
-        {
-            int row = rand.nextInt(Board.SIZE);
-            int col = rand.nextInt(Board.SIZE);
-            placed = board.placeShip(row, col, type, name);
-            attempts++;
-        }
+        // Names follow Ship.Type order.
+        new PlacementEngine(board).placeFleet(board, FLEET, shipNames, random);
     }
     
     // Getters.
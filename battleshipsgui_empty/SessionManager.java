@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * This class owns the games hosted by a server.
+ * Sessions live in a concurrent map and each game is guarded by its own
+ * session lock, so turns in different games never wait on each other.
+ * A sweeper expires sessions left alone too long and, before that, shrinks
+ * idle ones to their few-hundred-byte save encoding until they are used again.
+ * A session's spectator feed outlives hibernation and follows its game back.
+ */
+public class SessionManager implements AutoCloseable 
+{
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom ids = new SecureRandom();
+    private final long hibernateAfterNanos;
+    private final long expireAfterNanos;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(task -> 
+    {
+        Thread thread = new Thread(task, "session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * This creates a session manager.
+     * @param hibernateAfterMillis Idle time before a game is packed down to bytes.
+     * @param expireAfterMillis Idle time before a session is dropped.
+     */
+    public SessionManager(long hibernateAfterMillis, long expireAfterMillis) 
+    {
+        this.hibernateAfterNanos = TimeUnit.MILLISECONDS.toNanos(hibernateAfterMillis);
+        this.expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterMillis);
+        long period = Math.max(1, Math.min(hibernateAfterMillis, expireAfterMillis) / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Creates a session with a freshly placed game.
+     * @return the new session id.
+     */
+    public String create(int boardSize) 
+    {
+        return create(boardSize, false);
+    }
+    
+    /**
+     * Creates a session with a freshly placed game.
+     * @param salvo true for a game played in salvos.
+     * @return the new session id.
+     */
+    public String create(int boardSize, boolean salvo) 
+    {
+        BattleshipsGame game = new BattleshipsGame(boardSize);
+        game.setQuiet(true);
+        game.setSalvo(salvo);
+        game.startNewGame();
+        while (true) 
+        {
+            String id = Long.toString(ids.nextLong() & Long.MAX_VALUE, 36);
+            if (sessions.putIfAbsent(id, new Session(game)) == null) return id;
+        }
+    }
+    
+    /**
+     * Runs an action on a session's game while holding only that session's lock.
+     * @return the action's result, or null if there is no such session.
+     */
+    public <T> T withGame(String id, Function<BattleshipsGame, T> action) throws IOException 
+    {
+        Session session = sessions.get(id);
+        if (session == null) return null;
+        synchronized (session) 
+        {
+            if (session.expired) return null; // Swept while we were looking it up.
+            session.lastUsed = System.nanoTime();
+            return action.apply(session.thaw());
+        }
+    }
+    
+    /**
+     * Gets the spectator feed of a session, starting it on first use. Watching
+     * does not count as use, so it never keeps a session from idling.
+     * @return the feed, or null if there is no such session.
+     * @throws IllegalArgumentException if the board is too large to watch.
+     */
+    public SpectatorFeed feed(String id) throws IOException 
+    {
+        Session session = sessions.get(id);
+        if (session == null) return null;
+        synchronized (session) 
+        {
+            if (session.expired) return null;
+            if (session.feed == null) 
+            {
+                SpectatorFeed feed = new SpectatorFeed();
+                feed.attach(session.thaw()); // Throws for a board too large to watch.
+                session.feed = feed;
+            }
+            return session.feed;
+        }
+    }
+    
+    /** Ends a session. @return true if it existed. */
+    public boolean remove(String id) 
+    {
+        Session session = sessions.remove(id);
+        if (session == null) return false;
+        synchronized (session) 
+        {
+            session.expire();
+        }
+        return true;
+    }
+    
+    /** Gets the number of live sessions. */
+    public int size() 
+    {
+        return sessions.size();
+    }
+    
+    @Override
+    public void close() 
+    {
+        sweeper.shutdownNow();
+    }
+    
+    /** Expires or hibernates idle sessions, waiting out any turn in progress. */
+    private void sweep() 
+    {
+        long now = System.nanoTime();
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) 
+        {
+            Session session = it.next();
+            synchronized (session) 
+            {
+                long idle = now - session.lastUsed;
+                if (idle >= expireAfterNanos) 
+                {
+                    session.expire();
+                    it.remove();
+                } 
+                else if (idle >= hibernateAfterNanos) 
+                {
+                    session.freeze();
+                }
+            }
+        }
+    }
+    
+    /** One hosted game, either live or packed into its save encoding. */
+    static class Session 
+    {
+        private BattleshipsGame game; // Null while hibernating.
+        private byte[] frozen;        // Save encoding while hibernating.
+        private long lastUsed = System.nanoTime();
+        private boolean expired;
+        private SpectatorFeed feed;   // Null until someone watches.
+        
+        Session(BattleshipsGame game) 
+        {
+            this.game = game;
+        }
+        
+        /** Packs the game down to bytes. Caller holds the session lock. */
+        void freeze() 
+        {
+            if (game == null) return;
+            ByteBuffer encoded = game.encode();
+            frozen = new byte[encoded.remaining()];
+            encoded.get(frozen);
+            if (feed != null) feed.detach();
+            game = null;
+        }
+        
+        /** Brings a hibernating game back. Caller holds the session lock. */
+        BattleshipsGame thaw() throws IOException 
+        {
+            if (game == null) 
+            {
+                game = BattleshipsGame.decode(ByteBuffer.wrap(frozen));
+                game.setQuiet(true);
+                frozen = null;
+                if (feed != null) feed.attach(game);
+            }
+            return game;
+        }
+        
+        /** Marks the session gone; spectators keep what they last saw. Caller holds the session lock. */
+        void expire() 
+        {
+            expired = true;
+            if (feed != null) feed.detach();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a free-for-all on one large board: every player's fleet sits
+ * on the same ocean and anyone may fire at any cell but their own ships, at
+ * any time, from any thread. There are no turns and no locks. Each shot goes
+ * through Board.recordShotConcurrently, where one atomic operation decides the
+ * cell, and per-player counts of ship cells afloat are updated atomically, so
+ * exactly one shot sinks each ship and eliminates each player. The last
+ * player with ships afloat wins.
+ */
+public class SharedOcean 
+{
+    /** What a shot did. */
+    public enum Shot 
+    {
+        INVALID,    // Off the board.
+        OUT,        // Shooter already eliminated, or the game is over.
+        TAKEN,      // Cell had already been shot.
+        OWN,        // Cell holds one of the shooter's own ships; nothing is fired.
+        MISS,
+        HIT,
+        SUNK,       // Sank a ship.
+        FLEET_SUNK  // Sank the last ship of a player, who is now out.
+    }
+    
+    private static final int STRIDE = 16; // Ints between players' counters, so they sit on different cache lines.
+    private static final String[] SHIP_NAMES = 
+    {
+        "Battleship", "Cruiser", "Destroyer", "Submarine"
+    };
+    
+    private final Board board;
+    private final int players;
+    private final AtomicIntegerArray afloat; // Ship cells afloat per player, every STRIDE ints.
+    private final AtomicInteger playersAfloat;
+    private final LongAdder shotsFired = new LongAdder();
+    
+    /** This creates an ocean with roughly a 10x10 board's worth of water per player. */
+    public SharedOcean(int players) 
+    {
+        this(players, (int) Math.ceil(Board.DEFAULT_SIZE * Math.sqrt(players)), new SplittableRandom());
+    }
+    
+    /**
+     * This creates an ocean and places a standard fleet for every player.
+     * Player p owns ships p * FLEET.length to (p + 1) * FLEET.length - 1 of the board.
+     * @throws IllegalStateException if the fleets do not fit.
+     */
+    public SharedOcean(int players, int size, SplittableRandom random) 
+    {
+        if (players < 2) throw new IllegalArgumentException("Need at least 2 players");
+        this.players = players;
+        this.board = new Board(size);
+        Ship.Type[] fleets = new Ship.Type[players * Player.FLEET.length];
+        for (int p = 0; p < players; p++) 
+        {
+            System.arraycopy(Player.FLEET, 0, fleets, p * Player.FLEET.length, Player.FLEET.length);
+        }
+        new PlacementEngine(size).placeFleet(board, fleets, SHIP_NAMES, random);
+        
+        int fleetCells = 0;
+        for (Ship.Type type : Player.FLEET) fleetCells += type.size;
+        afloat = new AtomicIntegerArray(players * STRIDE);
+        for (int p = 0; p < players; p++) afloat.set(p * STRIDE, fleetCells);
+        playersAfloat = new AtomicInteger(players);
+    }
+    
+    /**
+     * Fires a shot; safe to call from any number of threads at once.
+     * @param shooter Player firing, from 0.
+     * @throws IllegalArgumentException if there is no such player.
+     */
+    public Shot fire(int shooter, int row, int col) 
+    {
+        if (shooter < 0 || shooter >= players) throw new IllegalArgumentException("No such player " + shooter);
+        if (afloat.get(shooter * STRIDE) == 0 || playersAfloat.get() <= 1) return Shot.OUT;
+        if (getOwnerAt(row, col) == shooter) return Shot.OWN; // Ship layout is fixed, so no race.
+        int result = board.recordShotConcurrently(row, col);
+        if (result == Board.SHOT_INVALID) return Shot.INVALID;
+        if (result == Board.SHOT_TAKEN) return Shot.TAKEN;
+        shotsFired.increment();
+        boolean hit = result != Board.SHOT_MISS;
+        GameMetrics.countShot(hit);
+        if (!hit) return Shot.MISS;
+        
+        int owner = (result / 2 - 1) / Player.FLEET.length;
+        if (afloat.decrementAndGet(owner * STRIDE) == 0) 
+        {
+            if (playersAfloat.decrementAndGet() == 1) GameMetrics.countGameCompleted();
+            return Shot.FLEET_SUNK;
+        }
+        return (result & 1) != 0 ? Shot.SUNK : Shot.HIT;
+    }
+    
+    /** Gets the player whose ship covers a cell, or -1 for water. */
+    public int getOwnerAt(int row, int col) 
+    {
+        int ship = board.getShipIndexAt(row, col);
+        return ship < 0 ? -1 : ship / Player.FLEET.length;
+    }
+    
+    /** Checks whether a player still has ships afloat. */
+    public boolean isAfloat(int player) 
+    {
+        return afloat.get(player * STRIDE) > 0;
+    }
+    
+    public int getPlayersAfloat() 
+    {
+        return playersAfloat.get();
+    }
+    
+    /**
+     * Gets the winner, or -1 while more than one player is afloat.
+     * Also -1 if the last two fleets went down to shots landing at the same instant.
+     */
+    public int getWinner() 
+    {
+        if (playersAfloat.get() > 1) return -1;
+        for (int p = 0; p < players; p++) 
+        {
+            if (isAfloat(p)) return p;
+        }
+        return -1;
+    }
+    
+    public boolean isGameOver() 
+    {
+        return playersAfloat.get() <= 1;
+    }
+    public int getPlayerCount() 
+    {
+        return players;
+    }
+    public long getShotsFired() 
+    {
+        return shotsFired.sum();
+    }
+    public Board getBoard() 
+    {
+        return board;
+    }
+    
+    /**
+     * Plays a free-for-all from the command line: every player fires random
+     * shots from its own thread until one is left.
+     * Arguments: [players] [seed].
+     */
+    public static void main(String[] args) throws InterruptedException 
+    {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        SplittableRandom random = new SplittableRandom(seed);
+        SharedOcean ocean = new SharedOcean(players, (int) Math.ceil(Board.DEFAULT_SIZE * Math.sqrt(players)), random.split());
+        int size = ocean.getBoard().getSize();
+        
+        ExecutorService shooters = Executors.newFixedThreadPool(players);
+        long start = System.nanoTime();
+        for (int p = 0; p < players; p++) 
+        {
+            int shooter = p;
+            SplittableRandom aim = random.split();
+            shooters.execute(() -> 
+            {
+                while (ocean.fire(shooter, aim.nextInt(size), aim.nextInt(size)) != Shot.OUT) 
+                {
+                    // Keep firing until out or the game ends.
+                }
+            });
+        }
+        shooters.shutdown();
+        shooters.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Seed " + seed + ", " + players + " players on " + size + "x" + size);
+        System.out.printf("Player %d wins after %d shots (%.0f shots/s)%n",
+                          ocean.getWinner(), ocean.getShotsFired(), ocean.getShotsFired() / seconds);
+    }
+}
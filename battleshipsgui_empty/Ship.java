@@ -1,13 +1,14 @@
 import java.io.Serializable;
-import java.util.ArrayList;
 /**
  * This class represents a ship in the Battleship game.
  * It tracks their type, position, and the damage state.
+ * The state itself lives in the owning Board's fleet arrays; a Ship is a
+ * view onto one entry, made once when the ship is placed.
  * Serializable for game saving/loading.
  */
 public class Ship implements Serializable 
 {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 3L;
     
     /** The Ship types with their sizes and display symbols */
     public enum Type 
@@ -27,70 +28,51 @@ public class Ship implements Serializable
         }
     }
     
-    private Type type;
-    private String name;
-    private ArrayList<int[]> segments; // Coordinates occupied.
-    private boolean[] hits;            // Damage state.
+    private final Board board;
+    private final int index; // Placement order on the board.
     
     
     /**
-     * This creates a new ship.
-     * @param type Ship classification.
-     * @param name Display name.
-     * @param segments Board coordinates the ship occupies.
+     * This creates a view of a ship placed on a board.
+     * @param board Board holding the ship.
+     * @param index Placement order on the board.
      */
-    public Ship(Type type, String name, ArrayList<int[]> segments) 
+    Ship(Board board, int index) 
     {
-        this.type = type;
-        this.name = name;
-        this.segments = segments;
-        this.hits = new boolean[type.size];
+        this.board = board;
+        this.index = index;
     }
     
     /** This checks if the ship occupies a given coordinate. */
     public boolean isAt(int row, int col) 
     {
-        for (int[] segment : segments) 
-        {
-            if (segment[0] == row && segment[1] == col) 
-            {
-                return true;
-            }
-        }
-        return false;
-    }
-    
-     /** This records a hit at a specific coordinate. */
-    public boolean recordHit(int row, int col) 
-    {
-        for (int i = 0; i < segments.size(); i++) 
-        {
-            if (segments.get(i)[0] == row && segments.get(i)[1] == col) 
-            {
-                hits[i] = true;
-                return true;
-            }
-        }
-        return false;
+        return board.getShipAt(row, col) == this;
     }
     
-    
     /** This determines if the ship is completely sunk. */
     public boolean isSunk() 
     {
-        for (boolean hit : hits) 
-        {
-            if (!hit) return false;
-        }
-        return true;
+        return board.shipAfloat(index) == 0;
     }
     
     public Type getType() 
     { 
-        return type; 
+        return board.shipType(index); 
+    }
+    public int getRow() 
+    { 
+        return board.shipStart(index) / board.getSize(); 
+    }
+    public int getCol() 
+    { 
+        return board.shipStart(index) % board.getSize(); 
+    }
+    public boolean isVertical() 
+    { 
+        return board.shipVertical(index); 
     }
     public String getName() 
     { 
-        return name; 
+        return board.shipName(index); 
     }
 }
\ No newline at end of file
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * This class streams shot records to a compressed, column-oriented file for
+ * offline analysis; ShotReader reads it back. Rows are gathered into row
+ * groups of a fixed size and each group is written as five columns - game id,
+ * shooter, cell, hit/sunk flags and ship type - so the values of one kind sit
+ * together and compress well. Game ids are stored as deltas and cells as
+ * varints before Deflate. Memory stays at one row group however many shots
+ * are written.
+ *
+ * Layout (big-endian): header (magic, version, board size, row group size),
+ * row groups (row count, then per column its raw and compressed lengths and
+ * the compressed bytes), footer (group count, then offset and row count per
+ * group, then total rows), trailer (footer offset, magic).
+ *
+ * Exporters are thread-safe. As a GameListener one records a game's shots
+ * under the game's seed as the game id.
+ */
+public class ShotExporter implements GameListener, AutoCloseable 
+{
+    static final int MAGIC = 0x42535358; // "BSSX"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 14;
+    static final int TRAILER_BYTES = 12;
+    static final int COLUMNS = 5;
+    static final int HIT = 1;
+    static final int SUNK = 2;
+    static final byte NO_SHIP = -1;
+    
+    public static final int DEFAULT_ROW_GROUP = 1 << 16;
+    // Shooters in a BattleshipsGame; simulations use 0 for A and 1 for B.
+    public static final int PLAYER = 0;
+    public static final int COMPUTER = 1;
+    
+    private final FileChannel channel;
+    private final int boardSize;
+    private final int rowGroupSize;
+    private final Buffer rows;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] raw = new byte[0];    // One column before compression.
+    private byte[] packed = new byte[0]; // One column after.
+    private long[] groupOffsets = new long[16];
+    private int[] groupRows = new int[16];
+    private int groups;
+    private long position;
+    private long totalRows;
+    private boolean closed;
+    
+    /** This creates an exporter with the default row group size. */
+    public ShotExporter(Path file, int boardSize) throws IOException 
+    {
+        this(file, boardSize, DEFAULT_ROW_GROUP);
+    }
+    
+    /**
+     * This creates an exporter, replacing any file already there.
+     * @param boardSize Cells per side of every game recorded.
+     * @param rowGroupSize Rows per group; a reader holds one group in memory.
+     */
+    public ShotExporter(Path file, int boardSize, int rowGroupSize) throws IOException 
+    {
+        if (rowGroupSize < 1) throw new IllegalArgumentException("Row group size must be positive");
+        this.boardSize = boardSize;
+        this.rowGroupSize = rowGroupSize;
+        this.rows = new Buffer(rowGroupSize);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putInt(boardSize).putInt(rowGroupSize).flip();
+        writeFully(header);
+    }
+    
+    /**
+     * Records one shot.
+     * @param type Type of the ship hit, or null for a miss.
+     */
+    public synchronized void record(long gameId, int shooter, int row, int col, boolean hit, boolean sunk, Ship.Type type) 
+        throws IOException 
+    {
+        rows.add(gameId, shooter, row * boardSize + col, hit, sunk, type);
+        if (rows.count == rowGroupSize) writeGroup();
+    }
+    
+    /** Records every shot in a buffer, e.g. one filled by a simulation worker, and clears it. */
+    public synchronized void write(Buffer shots) throws IOException 
+    {
+        for (int i = 0; i < shots.count; i++) 
+        {
+            rows.copy(shots, i);
+            if (rows.count == rowGroupSize) writeGroup();
+        }
+        shots.clear();
+    }
+    
+    @Override
+    public void shotFired(BattleshipsGame game, boolean byComputer, int row, int col, boolean hit) 
+    {
+        Ship ship = hit ? (byComputer ? game.getPlayerBoard() : game.getComputerBoard()).getShipAt(row, col) : null;
+        try 
+        {
+            record(game.getSeed(), byComputer ? COMPUTER : PLAYER, row, col, hit,
+                   ship != null && ship.isSunk(), ship == null ? null : ship.getType());
+        } 
+        catch (IOException e) 
+        {
+            System.err.println("Error exporting shot: " + e.getMessage());
+        }
+    }
+    
+    /** Gets the number of shots recorded so far. */
+    public synchronized long getRowCount() 
+    {
+        return totalRows + rows.count;
+    }
+    
+    /** Writes the last partial group and the footer, then closes the file. */
+    @Override
+    public synchronized void close() throws IOException 
+    {
+        if (closed) return;
+        closed = true;
+        try 
+        {
+            if (rows.count > 0) writeGroup();
+            long footerOffset = position;
+            ByteBuffer footer = ByteBuffer.allocate(4 + groups * 12 + 8 + TRAILER_BYTES);
+            footer.putInt(groups);
+            for (int g = 0; g < groups; g++) 
+            {
+                footer.putLong(groupOffsets[g]).putInt(groupRows[g]);
+            }
+            footer.putLong(totalRows);
+            footer.putLong(footerOffset).putInt(MAGIC).flip();
+            writeFully(footer);
+            channel.force(true);
+        } 
+        finally 
+        {
+            channel.close();
+            deflater.end();
+        }
+    }
+    
+    /** Encodes, compresses and writes the buffered rows as one group. */
+    private void writeGroup() throws IOException 
+    {
+        int count = rows.count;
+        if (groups == groupOffsets.length) 
+        {
+            groupOffsets = Arrays.copyOf(groupOffsets, groups * 2);
+            groupRows = Arrays.copyOf(groupRows, groups * 2);
+        }
+        groupOffsets[groups] = position;
+        groupRows[groups++] = count;
+        
+        ByteBuffer out = ByteBuffer.allocate(4);
+        out.putInt(count).flip();
+        writeFully(out);
+        for (int column = 0; column < COLUMNS; column++) 
+        {
+            int length = encodeColumn(column, count);
+            deflater.reset();
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            if (packed.length < length + 64) packed = new byte[length + length / 8 + 64];
+            int packedLength = 0;
+            while (!deflater.finished()) 
+            {
+                if (packedLength == packed.length) packed = Arrays.copyOf(packed, packed.length * 2);
+                packedLength += deflater.deflate(packed, packedLength, packed.length - packedLength);
+            }
+            ByteBuffer lengths = ByteBuffer.allocate(8);
+            lengths.putInt(length).putInt(packedLength).flip();
+            writeFully(lengths);
+            writeFully(ByteBuffer.wrap(packed, 0, packedLength));
+        }
+        totalRows += count;
+        rows.clear();
+    }
+    
+    /**
+     * Encodes one column of the buffered rows into raw.
+     * @return encoded length.
+     */
+    private int encodeColumn(int column, int count) 
+    {
+        if (raw.length < count * 10) raw = new byte[count * 10]; // Longest varint is 10 bytes.
+        int at = 0;
+        switch (column) 
+        {
+            case 0 -> 
+            {
+                long previous = 0;
+                for (int i = 0; i < count; i++) 
+                {
+                    long delta = rows.gameIds[i] - previous;
+                    previous = rows.gameIds[i];
+                    at = putVarint(raw, at, (delta << 1) ^ (delta >> 63)); // Zigzag, so small negatives stay small.
+                }
+            }
+            case 1 -> 
+            {
+                System.arraycopy(rows.shooters, 0, raw, 0, count);
+                at = count;
+            }
+            case 2 -> 
+            {
+                for (int i = 0; i < count; i++) at = putVarint(raw, at, rows.cells[i]);
+            }
+            case 3 -> 
+            {
+                System.arraycopy(rows.flags, 0, raw, 0, count);
+                at = count;
+            }
+            default -> 
+            {
+                System.arraycopy(rows.types, 0, raw, 0, count);
+                at = count;
+            }
+        }
+        return at;
+    }
+    
+    private static int putVarint(byte[] out, int at, long value) 
+    {
+        while ((value & ~0x7FL) != 0) 
+        {
+            out[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[at++] = (byte) value;
+        return at;
+    }
+    
+    private void writeFully(ByteBuffer buffer) throws IOException 
+    {
+        while (buffer.hasRemaining()) position += channel.write(buffer);
+    }
+    
+    /**
+     * This class is a growable batch of shot rows held as primitive columns.
+     * Not thread-safe; fill one per thread and hand it to write.
+     */
+    public static final class Buffer 
+    {
+        long[] gameIds;
+        byte[] shooters;
+        int[] cells;
+        byte[] flags;
+        byte[] types;
+        int count;
+        
+        public Buffer() 
+        {
+            this(1024);
+        }
+        
+        Buffer(int capacity) 
+        {
+            gameIds = new long[capacity];
+            shooters = new byte[capacity];
+            cells = new int[capacity];
+            flags = new byte[capacity];
+            types = new byte[capacity];
+        }
+        
+        /**
+         * Adds one shot.
+         * @param cell row * boardSize + col.
+         * @param type Type of the ship hit, or null for a miss.
+         */
+        public void add(long gameId, int shooter, int cell, boolean hit, boolean sunk, Ship.Type type) 
+        {
+            if (count == cells.length) grow();
+            gameIds[count] = gameId;
+            shooters[count] = (byte) shooter;
+            cells[count] = cell;
+            flags[count] = (byte) ((hit ? HIT : 0) | (sunk ? SUNK : 0));
+            types[count] = type == null ? NO_SHIP : (byte) type.ordinal();
+            count++;
+        }
+        
+        void copy(Buffer from, int i) 
+        {
+            if (count == cells.length) grow();
+            gameIds[count] = from.gameIds[i];
+            shooters[count] = from.shooters[i];
+            cells[count] = from.cells[i];
+            flags[count] = from.flags[i];
+            types[count] = from.types[i];
+            count++;
+        }
+        
+        public int size() 
+        {
+            return count;
+        }
+        
+        public void clear() 
+        {
+            count = 0;
+        }
+        
+        private void grow() 
+        {
+            int capacity = Math.max(16, cells.length * 2);
+            gameIds = Arrays.copyOf(gameIds, capacity);
+            shooters = Arrays.copyOf(shooters, capacity);
+            cells = Arrays.copyOf(cells, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+    }
+}
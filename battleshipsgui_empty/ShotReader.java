@@ -0,0 +1,356 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class reads shot files written by ShotExporter, one row group at a
+ * time into reused column arrays, so memory stays at one group whatever the
+ * file size. Either step through groups with nextGroup and the row getters,
+ * or pass a Visitor to scan. main prints a summary for analysis.
+ */
+public class ShotReader implements AutoCloseable 
+{
+    /** Receives shots from scan; type is null for a miss. */
+    public interface Visitor 
+    {
+        void shot(long gameId, int shooter, int row, int col, boolean hit, boolean sunk, Ship.Type type);
+    }
+    
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+    
+    private final FileChannel channel;
+    private final int boardSize;
+    private final long[] groupOffsets;
+    private final int[] groupRows;
+    private final long totalRows;
+    private final Inflater inflater = new Inflater();
+    private int nextGroup;
+    
+    // Current group, decoded.
+    private int rows;
+    private long[] gameIds = new long[0];
+    private byte[] shooters = new byte[0];
+    private int[] cells = new int[0];
+    private byte[] flags = new byte[0];
+    private byte[] types = new byte[0];
+    private byte[] packed = new byte[0];
+    private byte[] raw = new byte[0];
+    
+    private ShotReader(FileChannel channel) throws IOException 
+    {
+        this.channel = channel;
+        ByteBuffer header = read(0, ShotExporter.HEADER_BYTES);
+        if (header.getInt() != ShotExporter.MAGIC) throw new IOException("Not a shot file");
+        short version = header.getShort();
+        if (version != ShotExporter.VERSION) throw new IOException("Unsupported shot file version " + version);
+        boardSize = header.getInt();
+        
+        long size = channel.size();
+        ByteBuffer trailer = read(size - ShotExporter.TRAILER_BYTES, ShotExporter.TRAILER_BYTES);
+        long footerOffset = trailer.getLong();
+        if (trailer.getInt() != ShotExporter.MAGIC || footerOffset < ShotExporter.HEADER_BYTES 
+            || footerOffset > size - ShotExporter.TRAILER_BYTES) 
+        {
+            throw new IOException("Shot file has no footer; was the exporter closed?");
+        }
+        ByteBuffer footer = read(footerOffset, (int) (size - ShotExporter.TRAILER_BYTES - footerOffset));
+        int groups = footer.getInt();
+        if (groups < 0 || groups > footer.remaining() / 12) throw new IOException("Bad shot file footer");
+        groupOffsets = new long[groups];
+        groupRows = new int[groups];
+        for (int g = 0; g < groups; g++) 
+        {
+            groupOffsets[g] = footer.getLong();
+            groupRows[g] = footer.getInt();
+        }
+        totalRows = footer.getLong();
+    }
+    
+    /** Opens a shot file. */
+    public static ShotReader open(Path file) throws IOException 
+    {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try 
+        {
+            return new ShotReader(channel);
+        } 
+        catch (IOException | RuntimeException e) 
+        {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    public int getBoardSize() 
+    {
+        return boardSize;
+    }
+    public long getRowCount() 
+    {
+        return totalRows;
+    }
+    public int getGroupCount() 
+    {
+        return groupOffsets.length;
+    }
+    
+    /**
+     * Loads the next row group.
+     * @return false when there are no more.
+     */
+    public boolean nextGroup() throws IOException 
+    {
+        if (nextGroup == groupOffsets.length) return false;
+        long at = groupOffsets[nextGroup];
+        rows = read(at, 4).getInt();
+        if (rows != groupRows[nextGroup++]) throw new IOException("Row group does not match footer");
+        at += 4;
+        if (cells.length < rows) 
+        {
+            gameIds = new long[rows];
+            shooters = new byte[rows];
+            cells = new int[rows];
+            flags = new byte[rows];
+            types = new byte[rows];
+        }
+        for (int column = 0; column < ShotExporter.COLUMNS; column++) 
+        {
+            ByteBuffer lengths = read(at, 8);
+            int length = lengths.getInt();
+            int packedLength = lengths.getInt();
+            if (length < 0 || packedLength < 0 || length > rows * 10) throw new IOException("Bad column in row group");
+            at += 8;
+            if (packed.length < packedLength) packed = new byte[packedLength];
+            ByteBuffer in = ByteBuffer.wrap(packed, 0, packedLength);
+            while (in.hasRemaining()) 
+            {
+                if (channel.read(in, at + in.position()) < 0) throw new EOFException("Shot file is truncated");
+            }
+            at += packedLength;
+            inflate(packedLength, length);
+            decodeColumn(column, length);
+        }
+        return true;
+    }
+    
+    // Rows of the current group, from 0 to getGroupRows() - 1.
+    public int getGroupRows() 
+    {
+        return rows;
+    }
+    public long getGameId(int i) 
+    {
+        return gameIds[i];
+    }
+    public int getShooter(int i) 
+    {
+        return shooters[i];
+    }
+    public int getRow(int i) 
+    {
+        return cells[i] / boardSize;
+    }
+    public int getCol(int i) 
+    {
+        return cells[i] % boardSize;
+    }
+    public boolean isHit(int i) 
+    {
+        return (flags[i] & ShotExporter.HIT) != 0;
+    }
+    public boolean isSunk(int i) 
+    {
+        return (flags[i] & ShotExporter.SUNK) != 0;
+    }
+    public Ship.Type getType(int i) 
+    {
+        return types[i] == ShotExporter.NO_SHIP ? null : TYPES[types[i]];
+    }
+    
+    /**
+     * Passes every remaining shot to a visitor, group by group.
+     * @return shots visited.
+     */
+    public long scan(Visitor visitor) throws IOException 
+    {
+        long visited = 0;
+        while (nextGroup()) 
+        {
+            for (int i = 0; i < rows; i++) 
+            {
+                visitor.shot(gameIds[i], shooters[i], getRow(i), getCol(i), isHit(i), isSunk(i), getType(i));
+            }
+            visited += rows;
+        }
+        return visited;
+    }
+    
+    @Override
+    public void close() throws IOException 
+    {
+        inflater.end();
+        channel.close();
+    }
+    
+    private void inflate(int packedLength, int length) throws IOException 
+    {
+        if (raw.length < length) raw = new byte[length];
+        inflater.reset();
+        inflater.setInput(packed, 0, packedLength);
+        try 
+        {
+            int done = 0;
+            while (done < length && !inflater.finished()) 
+            {
+                int n = inflater.inflate(raw, done, length - done);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                done += n;
+            }
+            if (done != length) throw new IOException("Column is shorter than recorded");
+        } 
+        catch (DataFormatException e) 
+        {
+            throw new IOException("Corrupt column: " + e.getMessage());
+        }
+    }
+    
+    private void decodeColumn(int column, int length) throws IOException 
+    {
+        switch (column) 
+        {
+            case 0 -> 
+            {
+                long previous = 0;
+                int at = 0;
+                for (int i = 0; i < rows; i++) 
+                {
+                    long value = 0;
+                    int shift = 0;
+                    byte b;
+                    do 
+                    {
+                        if (at == length || shift > 63) throw new IOException("Bad game id column");
+                        b = raw[at++];
+                        value |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += (value >>> 1) ^ -(value & 1);
+                    gameIds[i] = previous;
+                }
+            }
+            case 2 -> 
+            {
+                int at = 0;
+                for (int i = 0; i < rows; i++) 
+                {
+                    int value = 0;
+                    int shift = 0;
+                    byte b;
+                    do 
+                    {
+                        if (at == length || shift > 28) throw new IOException("Bad cell column");
+                        b = raw[at++];
+                        value |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    if (value < 0 || value >= boardSize * boardSize) throw new IOException("Bad cell " + value);
+                    cells[i] = value;
+                }
+            }
+            default -> 
+            {
+                if (length != rows) throw new IOException("Bad column length");
+                byte[] target = column == 1 ? shooters : column == 3 ? flags : types;
+                System.arraycopy(raw, 0, target, 0, rows);
+                if (column == 4) 
+                {
+                    for (int i = 0; i < rows; i++) 
+                    {
+                        if (types[i] != ShotExporter.NO_SHIP && (types[i] < 0 || types[i] >= TYPES.length)) 
+                        {
+                            throw new IOException("Bad ship type " + types[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /** Reads bytes at a position; only for headers and lengths. */
+    private ByteBuffer read(long at, int length) throws IOException 
+    {
+        if (at < 0 || length < 0) throw new IOException("Bad offset in shot file");
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) 
+        {
+            if (channel.read(buffer, at + buffer.position()) < 0) throw new EOFException("Shot file is truncated");
+        }
+        return buffer.flip();
+    }
+    
+    /**
+     * Summarises a shot file: games, and per shooter the shots, hit rate and
+     * wins, and for small boards the hit rate of every cell, which shows any
+     * bias in where ships are placed. A game's shots are taken to be together
+     * in the file, as Simulation writes them; the last shot of a game counts
+     * as the win.
+     * Arguments: file.
+     */
+    public static void main(String[] args) throws IOException 
+    {
+        try (ShotReader reader = open(Path.of(args[0]))) 
+        {
+            int size = reader.getBoardSize();
+            long[] shots = new long[256];
+            long[] hits = new long[256];
+            long[] wins = new long[256];
+            long[] games = {0};
+            long[] cellShots = new long[size * size];
+            long[] cellHits = new long[size * size];
+            long[] lastGame = {Long.MIN_VALUE};
+            int[] lastShooter = {-1};
+            reader.scan((gameId, shooter, row, col, hit, sunk, type) -> 
+            {
+                int s = shooter & 0xFF;
+                shots[s]++;
+                if (hit) hits[s]++;
+                if (gameId != lastGame[0]) 
+                {
+                    if (lastShooter[0] >= 0) wins[lastShooter[0]]++;
+                    games[0]++;
+                    lastGame[0] = gameId;
+                }
+                lastShooter[0] = s;
+                cellShots[row * size + col]++;
+                if (hit) cellHits[row * size + col]++;
+            });
+            if (lastShooter[0] >= 0) wins[lastShooter[0]]++;
+            System.out.println(reader.getRowCount() + " shots, " + games[0] + " games, " + reader.getGroupCount() 
+                               + " row groups, " + size + "x" + size + " board");
+            for (int s = 0; s < shots.length; s++) 
+            {
+                if (shots[s] == 0) continue;
+                System.out.printf("Shooter %d: %d shots, hit rate %.3f, %d wins%n", s, shots[s], (double) hits[s] / shots[s], wins[s]);
+            }
+            if (size <= 20) 
+            {
+                System.out.println("Hit rate by cell:");
+                for (int row = 0; row < size; row++) 
+                {
+                    StringBuilder line = new StringBuilder();
+                    for (int col = 0; col < size; col++) 
+                    {
+                        int cell = row * size + col;
+                        line.append(String.format(" %.2f", cellShots[cell] == 0 ? 0.0 : (double) cellHits[cell] / cellShots[cell]));
+                    }
+                    System.out.println(line);
+                }
+            }
+        }
+    }
+}
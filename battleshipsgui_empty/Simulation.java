@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * This class plays complete computer-vs-computer games without any console or GUI.
+ * Batches are split across a fork-join pool; each worker plays its share of games
+ * into private statistics that are merged on the way back up, so workers
+ * share no mutable state and throughput grows with core count.
+ * Each game's randomness comes from a seed worked out from the batch seed and
+ * the game number alone, so results do not depend on which thread played
+ * what, and play(game) replays any single game of a batch exactly. Monte Carlo
+ * targeting samples against the clock, so it would break that and is refused.
+ * A batch can also export every shot to a ShotExporter for offline analysis.
+ */
+public class Simulation 
+{
+    private static final int GAMES_PER_TASK = 64; // Below this a batch is played, not split.
+    private static final String[] SHIP_NAMES = 
+    {
+        "Battleship", "Cruiser", "Destroyer", "Submarine"
+    };
+    
+    private final int boardSize;
+    private final Function<SplittableRandom, ? extends TargetingStrategy> strategyA;
+    private final Function<SplittableRandom, ? extends TargetingStrategy> strategyB;
+    private final ForkJoinPool pool;
+    private final long seed;
+    
+    /**
+     * This creates a simulator that uses every core, with a random batch seed.
+     * @param boardSize Cells per side.
+     * @param strategyA Makes a fresh strategy A for each game from that game's random stream.
+     * @param strategyB Makes a fresh strategy B for each game from that game's random stream.
+     */
+    public Simulation(int boardSize, Function<SplittableRandom, ? extends TargetingStrategy> strategyA,
+                      Function<SplittableRandom, ? extends TargetingStrategy> strategyB) 
+    {
+        this(boardSize, strategyA, strategyB, ForkJoinPool.commonPool(), new SplittableRandom().nextLong());
+    }
+    
+    /** This creates a simulator on a specific pool with a fixed batch seed. */
+    public Simulation(int boardSize, Function<SplittableRandom, ? extends TargetingStrategy> strategyA,
+                      Function<SplittableRandom, ? extends TargetingStrategy> strategyB, ForkJoinPool pool, long seed) 
+    {
+        this.boardSize = boardSize;
+        this.strategyA = strategyA;
+        this.strategyB = strategyB;
+        this.pool = pool;
+        this.seed = seed;
+    }
+    
+    /** Gets the batch seed. */
+    public long getSeed() 
+    {
+        return seed;
+    }
+    
+    /**
+     * Gets the seed of one game in the batch.
+     * Game numbers are spread with the SplitMix64 finalizer, so neighbouring
+     * games get unrelated seeds without any shared generator.
+     */
+    public long gameSeed(long game) 
+    {
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * Plays, or replays, one game of the batch: the same as run plays it.
+     * @return shots fired by the winner, negative when B won.
+     */
+    public int play(long game) 
+    {
+        return playGame(new SplittableRandom(gameSeed(game)), (game & 1) == 0);
+    }
+    
+    /**
+     * Plays a batch of games.
+     * Strategies take turns firing one shot each; A moves first in even-numbered games
+     * and B in odd-numbered ones so neither gains from always starting.
+     * @param games Number of games to play.
+     * @return win counts and shots-to-win distributions.
+     */
+    public SimulationStats run(long games) 
+    {
+        return run(games, null);
+    }
+    
+    /**
+     * Plays a batch of games, exporting every shot.
+     * Shots go out under the game number as game id, with shooter 0 for A and 1 for B.
+     * Each worker buffers its own games and hands them over whole, so a game's
+     * shots stay together in the file.
+     * @param exporter Receives the shots, or null for none.
+     */
+    public SimulationStats run(long games, ShotExporter exporter) 
+    {
+        return pool.invoke(new Batch(0, games, exporter));
+    }
+    
+    /**
+     * Plays one game to the end.
+     * @param random Game's stream; each side's fleet and strategy get their own split.
+     * @return shots fired by the winner, negative when B won.
+     */
+    int playGame(SplittableRandom random, boolean aStarts) 
+    {
+        return playGame(random, aStarts, null, 0);
+    }
+    
+    /**
+     * Plays one game to the end, adding its shots to a buffer.
+     * @param shots Receives the shots, or null for none.
+     */
+    private int playGame(SplittableRandom random, boolean aStarts, ShotExporter.Buffer shots, long game) 
+    {
+        Board boardA = new Board(boardSize); // A's fleet, fired on by B.
+        Board boardB = new Board(boardSize);
+        new Player("A", boardA, SHIP_NAMES, random.split()).placeShips();
+        new Player("B", boardB, SHIP_NAMES, random.split()).placeShips();
+        TargetingStrategy a = requireReplayable(strategyA.apply(random.split()));
+        TargetingStrategy b = requireReplayable(strategyB.apply(random.split()));
+        
+        int shotsA = 0;
+        int shotsB = 0;
+        boolean aToMove = aStarts;
+        while (true) 
+        {
+            if (aToMove) 
+            {
+                shotsA++;
+                if (fire(a, boardB, shots, game, 0)) return shotsA;
+            } 
+            else 
+            {
+                shotsB++;
+                if (fire(b, boardA, shots, game, 1)) return -shotsB;
+            }
+            aToMove = !aToMove;
+        }
+    }
+    
+    /**
+     * Checks that a strategy plays the same game every time from the same stream.
+     * @throws IllegalArgumentException for Monte Carlo targeting, whose moves depend on timing.
+     */
+    private static TargetingStrategy requireReplayable(TargetingStrategy strategy) 
+    {
+        if (strategy instanceof MonteCarloTargeting 
+            || strategy instanceof ComputerPlayer computer && computer.getTargeting() == ComputerPlayer.Targeting.MONTE_CARLO) 
+        {
+            throw new IllegalArgumentException("MONTE_CARLO samples against the clock, so its games cannot be replayed");
+        }
+        return strategy;
+    }
+    
+    /**
+     * Lets a strategy take one shot.
+     * @param shots Receives the shot, or null for none.
+     * @return true if that shot sank the last ship.
+     */
+    private static boolean fire(TargetingStrategy strategy, Board target, ShotExporter.Buffer shots, long game, int shooter) 
+    {
+        int shot = strategy.nextShot(target);
+        int row = Board.rowOf(shot);
+        int col = Board.colOf(shot);
+        if (!target.isValidShot(row, col)) 
+        {
+            throw new IllegalStateException("Strategy chose an invalid shot: " + row + "," + col);
+        }
+        boolean hit = target.recordShot(row, col);
+        strategy.recordShotResult(row, col, hit);
+        if (shots != null) 
+        {
+            int ship = hit ? target.getShipIndexAt(row, col) : -1;
+            shots.add(game, shooter, row * target.getSize() + col, hit,
+                      ship >= 0 && target.shipAfloat(ship) == 0, ship >= 0 ? target.shipType(ship) : null);
+        }
+        return hit && target.allShipsSunk();
+    }
+    
+    /** A range of game numbers, split in half until small enough to play directly. */
+    private class Batch extends RecursiveTask<SimulationStats> 
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private final long from;
+        private final long to;
+        private final ShotExporter exporter;
+        
+        Batch(long from, long to, ShotExporter exporter) 
+        {
+            this.from = from;
+            this.to = to;
+            this.exporter = exporter;
+        }
+        
+        @Override
+        protected SimulationStats compute() 
+        {
+            if (to - from <= GAMES_PER_TASK) 
+            {
+                SimulationStats stats = new SimulationStats(boardSize * boardSize);
+                ShotExporter.Buffer shots = exporter == null ? null : new ShotExporter.Buffer();
+                for (long game = from; game < to; game++) 
+                {
+                    int result = playGame(new SplittableRandom(gameSeed(game)), (game & 1) == 0, shots, game);
+                    stats.recordWin(result > 0, Math.abs(result));
+                }
+                if (shots != null) 
+                {
+                    try 
+                    {
+                        exporter.write(shots);
+                    } 
+                    catch (IOException e) 
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return stats;
+            }
+            long mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid, exporter);
+            left.fork();
+            SimulationStats stats = new Batch(mid, to, exporter).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+    
+    /**
+     * Runs computer-vs-computer games from the command line.
+     * Arguments: [games] [boardSize] [targeting for A] [targeting for B] [seed] [shot file],
+     * where targeting is a ComputerPlayer.Targeting name such as HUNT or DENSITY
+     * (not MONTE_CARLO, which cannot be replayed).
+     * The batch seed is printed, so a run can be repeated exactly. Given a shot
+     * file, every shot is exported to it for ShotReader.
+     */
+    public static void main(String[] args) throws IOException 
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : Board.DEFAULT_SIZE;
+        ComputerPlayer.Targeting targetingA = args.length > 2 ? ComputerPlayer.Targeting.valueOf(args[2]) : ComputerPlayer.Targeting.HUNT;
+        ComputerPlayer.Targeting targetingB = args.length > 3 ? ComputerPlayer.Targeting.valueOf(args[3]) : targetingA;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+        Simulation simulation = new Simulation(size, computer(targetingA), computer(targetingB),
+                                               ForkJoinPool.commonPool(), seed);
+        
+        long start = System.nanoTime();
+        SimulationStats stats;
+        if (args.length > 5) 
+        {
+            try (ShotExporter exporter = new ShotExporter(Path.of(args[5]), size)) 
+            {
+                stats = simulation.run(games, exporter);
+            }
+        } 
+        else 
+        {
+            stats = simulation.run(games);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Seed " + seed);
+        System.out.println(stats);
+        System.out.printf("%.0f games/s on %d threads%n", games / seconds, simulation.pool.getParallelism());
+    }
+    
+    /** Makes a computer player factory for one targeting mode. */
+    private static Function<SplittableRandom, ComputerPlayer> computer(ComputerPlayer.Targeting targeting) 
+    {
+        return random -> 
+        {
+            ComputerPlayer player = new ComputerPlayer("Computer", null, SHIP_NAMES, random);
+            player.setTargeting(targeting);
+            return player;
+        };
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * This class holds the outcome of a batch of simulated games.
+ * Shots-to-win are kept as histograms indexed by shot count,
+ * so batches can be merged cheaply and percentiles read without sorting.
+ */
+public class SimulationStats 
+{
+    private final long[] shotsToWinA; // Games won by strategy A, by shots fired.
+    private final long[] shotsToWinB; // Games won by strategy B, by shots fired.
+    private long winsA;
+    private long winsB;
+    
+    /**
+     * This creates empty statistics.
+     * @param maxShots Most shots a side can fire in one game.
+     */
+    public SimulationStats(int maxShots) 
+    {
+        shotsToWinA = new long[maxShots + 1];
+        shotsToWinB = new long[maxShots + 1];
+    }
+    
+    /** This records one finished game. */
+    void recordWin(boolean strategyA, int shots) 
+    {
+        if (strategyA) 
+        {
+            winsA++;
+            shotsToWinA[shots]++;
+        } 
+        else 
+        {
+            winsB++;
+            shotsToWinB[shots]++;
+        }
+    }
+    
+    /** This adds another batch into this one. */
+    void merge(SimulationStats other) 
+    {
+        winsA += other.winsA;
+        winsB += other.winsB;
+        for (int i = 0; i < shotsToWinA.length; i++) 
+        {
+            shotsToWinA[i] += other.shotsToWinA[i];
+            shotsToWinB[i] += other.shotsToWinB[i];
+        }
+    }
+    
+    public long getGames() 
+    { 
+        return winsA + winsB; 
+    }
+    public long getWinsA() 
+    { 
+        return winsA; 
+    }
+    public long getWinsB() 
+    { 
+        return winsB; 
+    }
+    
+    /** Gets how many of A's wins (or B's) took exactly the given number of shots. */
+    public long getWinsWithShots(boolean strategyA, int shots) 
+    {
+        long[] histogram = strategyA ? shotsToWinA : shotsToWinB;
+        return shots < 0 || shots >= histogram.length ? 0 : histogram[shots];
+    }
+    
+    /** Gets the mean shots-to-win for A or B, or 0 if it never won. */
+    public double getMeanShotsToWin(boolean strategyA) 
+    {
+        long[] histogram = strategyA ? shotsToWinA : shotsToWinB;
+        long wins = strategyA ? winsA : winsB;
+        if (wins == 0) return 0;
+        double total = 0;
+        for (int i = 0; i < histogram.length; i++) 
+        {
+            total += (double) i * histogram[i];
+        }
+        return total / wins;
+    }
+    
+    /**
+     * Gets a shots-to-win percentile for A or B.
+     * @param fraction Between 0 and 1, e.g. 0.5 for the median.
+     * @return smallest shot count covering that share of wins, or 0 if none.
+     */
+    public int getShotsToWinPercentile(boolean strategyA, double fraction) 
+    {
+        long[] histogram = strategyA ? shotsToWinA : shotsToWinB;
+        long wins = strategyA ? winsA : winsB;
+        if (wins == 0) return 0;
+        long needed = Math.max(1, (long) Math.ceil(fraction * wins));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) 
+        {
+            seen += histogram[i];
+            if (seen >= needed) return i;
+        }
+        return histogram.length - 1;
+    }
+    
+    @Override
+    public String toString() 
+    {
+        return String.format("%d games: A won %d (mean %.1f, median %d shots), B won %d (mean %.1f, median %d shots)",
+            getGames(), winsA, getMeanShotsToWin(true), getShotsToWinPercentile(true, 0.5),
+            winsB, getMeanShotsToWin(false), getShotsToWinPercentile(false, 0.5));
+    }
+}
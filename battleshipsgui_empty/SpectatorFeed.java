@@ -0,0 +1,278 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class lets any number of spectators watch a game as it is played.
+ * Attached to a BattleshipsGame, it turns each shot into a delta - which
+ * board, which cell, hit or miss - and publishes a keyframe holding both
+ * boards as an opponent sees them (shots only, never ships) when a game
+ * starts and every few shots after.
+ *
+ * Frames go into one ring buffer that only the game's thread writes, and each
+ * Subscription reads it through its own cursor. Publishing costs the same for
+ * one spectator or thousands and never waits for any of them. A spectator
+ * that falls more than the ring's capacity behind has lost deltas, so it skips
+ * to the latest keyframe and carries on from there.
+ *
+ * Events for one feed must not overlap, which holds when a single game drives
+ * it; subscriptions may be polled from any threads.
+ */
+public class SpectatorFeed implements GameListener 
+{
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+    
+    // A frame is its sequence number over a 24-bit payload.
+    private static final int SEQUENCE_SHIFT = 24;
+    private static final long PAYLOAD = (1L << SEQUENCE_SHIFT) - 1;
+    private static final long SEQUENCE_MASK = -1L >>> SEQUENCE_SHIFT;
+    private static final int KEYFRAME = 1 << 23;     // Marker for a keyframe at this sequence.
+    private static final int RESET = 1 << 22;        // With KEYFRAME: a new board, so earlier deltas no longer apply.
+    private static final int PLAYER_BOARD = 1 << 21; // Shot by the computer at the player's board.
+    private static final int HIT = 1 << 20;
+    private static final int CELL = HIT - 1;         // Room for a 1000x1000 board.
+    
+    /** Receives frames from Subscription.poll. */
+    public interface Viewer 
+    {
+        /** Both boards in full; everything before it is superseded. */
+        void keyframe(Keyframe keyframe);
+        
+        /**
+         * One shot landed.
+         * @param playerBoard true for the computer's shot at the player's board.
+         */
+        void shot(boolean playerBoard, int row, int col, boolean hit);
+    }
+    
+    private final AtomicLongArray ring;
+    private final int mask;
+    private final int keyframeInterval;
+    private volatile long published;   // Frames written; also the next sequence number.
+    private volatile Keyframe keyframe; // Latest.
+    private int sinceKeyframe;
+    private BattleshipsGame game;
+    
+    /** This creates a feed with the default capacity and keyframe interval. */
+    public SpectatorFeed() 
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_KEYFRAME_INTERVAL);
+    }
+    
+    /**
+     * This creates a feed.
+     * @param capacity Frames a spectator may fall behind before it skips to a
+     *     keyframe; rounded up to a power of two.
+     * @param keyframeInterval Shots between keyframes; below capacity, so a
+     *     spectator that skips still has the deltas after the keyframe.
+     */
+    public SpectatorFeed(int capacity, int keyframeInterval) 
+    {
+        if (keyframeInterval < 1 || keyframeInterval >= capacity) 
+        {
+            throw new IllegalArgumentException("Keyframe interval must be between 1 and the capacity");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        ring = new AtomicLongArray(size);
+        mask = size - 1;
+        this.keyframeInterval = keyframeInterval;
+    }
+    
+    /**
+     * Starts following a game, e.g. the same game brought back from hibernation,
+     * and publishes a keyframe of it. Any game followed before is let go.
+     */
+    public void attach(BattleshipsGame game) 
+    {
+        if (game.getBoardSize() * game.getBoardSize() > CELL + 1) 
+        {
+            throw new IllegalArgumentException("Board too large to watch");
+        }
+        detach();
+        this.game = game;
+        game.addListener(this);
+        publishKeyframe(game, true);
+    }
+    
+    /** Stops following the current game; spectators keep what they have. */
+    public void detach() 
+    {
+        if (game == null) return;
+        game.removeListener(this);
+        game = null;
+    }
+    
+    /** Creates a subscription that starts from the latest keyframe. */
+    public Subscription subscribe() 
+    {
+        return new Subscription();
+    }
+    
+    /** Gets the number of frames published so far. */
+    public long getPublished() 
+    {
+        return published;
+    }
+    
+    @Override
+    public void gameStarted(BattleshipsGame game) 
+    {
+        publishKeyframe(game, true);
+    }
+    
+    @Override
+    public void shotFired(BattleshipsGame game, boolean byComputer, int row, int col, boolean hit) 
+    {
+        publish((byComputer ? PLAYER_BOARD : 0) | (hit ? HIT : 0) | (row * game.getBoardSize() + col));
+        if (++sinceKeyframe >= keyframeInterval) publishKeyframe(game, false);
+    }
+    
+    private void publishKeyframe(BattleshipsGame game, boolean reset) 
+    {
+        keyframe = new Keyframe(published, game); // Visible before its marker.
+        publish(KEYFRAME | (reset ? RESET : 0));
+        sinceKeyframe = 0;
+    }
+    
+    private void publish(int payload) 
+    {
+        long sequence = published;
+        ring.setRelease((int) sequence & mask, (sequence & SEQUENCE_MASK) << SEQUENCE_SHIFT | payload);
+        published = sequence + 1;
+    }
+    
+    /** Both boards at one point in the feed, as an opponent sees them. */
+    public static final class Keyframe 
+    {
+        private final long sequence;
+        private final int size;
+        private final byte[] cells; // Player's board, then the computer's.
+        
+        Keyframe(long sequence, BattleshipsGame game) 
+        {
+            this.sequence = sequence;
+            this.size = game.getBoardSize();
+            cells = new byte[2 * size * size];
+            Board[] boards = {game.getPlayerBoard(), game.getComputerBoard()};
+            for (int b = 0, i = 0; b < boards.length; b++) 
+            {
+                for (int row = 0; row < size; row++) 
+                {
+                    for (int col = 0; col < size; col++) 
+                    {
+                        cells[i++] = (byte) boards[b].getCellState(row, col, false);
+                    }
+                }
+            }
+        }
+        
+        /** Gets the position of this keyframe in the feed. */
+        public long getSequence() 
+        {
+            return sequence;
+        }
+        
+        public int getSize() 
+        {
+            return size;
+        }
+        
+        /** Gets 'X' for a hit, 'O' for a miss or '~' for a cell not shot yet. */
+        public char getCellState(int row, int col, boolean playerBoard) 
+        {
+            return (char) cells[(playerBoard ? 0 : size * size) + row * size + col];
+        }
+    }
+    
+    /**
+     * One spectator's place in the feed. Only the spectator moves it, so a slow
+     * one holds up nobody else. Not thread-safe; poll from one thread at a time.
+     */
+    public final class Subscription 
+    {
+        private long cursor = -1; // Next frame to read; -1 until the first keyframe.
+        private int size;
+        private long skips;
+        
+        private Subscription() 
+        {
+        }
+        
+        /**
+         * Passes on frames published since the last poll, without waiting.
+         * @param max Most frames to pass on in this call.
+         * @return frames passed on.
+         */
+        public int poll(Viewer viewer, int max) 
+        {
+            int delivered = 0;
+            while (delivered < max) 
+            {
+                long end = published;
+                if (cursor < 0 || end - cursor > mask + 1) 
+                {
+                    if (!skipToKeyframe(viewer)) break;
+                    delivered++;
+                    continue;
+                }
+                if (cursor >= end) break; // Past end when a keyframe is read just before its marker.
+                long frame = ring.getAcquire((int) cursor & mask);
+                long written = frame >>> SEQUENCE_SHIFT;
+                if (written < (cursor & SEQUENCE_MASK)) break; // Not visible yet.
+                if (written != (cursor & SEQUENCE_MASK)) 
+                {
+                    // Overwritten since we read published: we have been lapped.
+                    if (!skipToKeyframe(viewer)) break;
+                    delivered++;
+                    continue;
+                }
+                int payload = (int) (frame & PAYLOAD);
+                if ((payload & KEYFRAME) != 0) 
+                {
+                    if ((payload & RESET) == 0) 
+                    {
+                        cursor++; // Already in step; only skippers need it.
+                        continue;
+                    }
+                    deliverKeyframe(viewer, keyframe);
+                } 
+                else 
+                {
+                    int cell = payload & CELL;
+                    viewer.shot((payload & PLAYER_BOARD) != 0, cell / size, cell % size, (payload & HIT) != 0);
+                    cursor++;
+                }
+                delivered++;
+            }
+            return delivered;
+        }
+        
+        /** Gets how often this spectator fell too far behind and skipped to a keyframe. */
+        public long getSkips() 
+        {
+            return skips;
+        }
+        
+        /** Gets how many published frames this spectator has still to read. */
+        public long getLag() 
+        {
+            return cursor < 0 ? published : published - cursor;
+        }
+        
+        private boolean skipToKeyframe(Viewer viewer) 
+        {
+            Keyframe latest = keyframe;
+            if (latest == null) return false; // Nothing published yet.
+            if (cursor >= 0) skips++;
+            deliverKeyframe(viewer, latest);
+            return true;
+        }
+        
+        private void deliverKeyframe(Viewer viewer, Keyframe latest) 
+        {
+            // A later keyframe than the marker's only saves replaying deltas.
+            size = latest.size;
+            cursor = latest.sequence + 1;
+            viewer.keyframe(latest);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * This interface is a way of choosing shots against an opponent's board.
+ * The game and the headless simulator drive any strategy the same way:
+ * ask for a move, fire it, then report the result back.
+ * Moves are packed into one int with Board.pack, so choosing a shot need not allocate.
+ */
+public interface TargetingStrategy 
+{
+    /**
+     * Chooses the next shot.
+     * @param opponentBoard Board being fired at; only valid shots may be returned.
+     * @return the shot, packed with Board.pack.
+     */
+    int nextShot(Board opponentBoard);
+    
+    /**
+     * Chooses the next shot as a pair.
+     * @return {row, col} of the shot.
+     */
+    default int[] makeMove(Board opponentBoard) 
+    {
+        int shot = nextShot(opponentBoard);
+        return new int[]{Board.rowOf(shot), Board.colOf(shot)};
+    }
+    
+    /** Updates strategy state after a shot has been fired. */
+    void recordShotResult(int row, int col, boolean wasHit);
+}
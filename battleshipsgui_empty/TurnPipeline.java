@@ -0,0 +1,153 @@
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class runs the computer's turn away from the Swing event thread.
+ * ComputerPlayer.nextShot runs on a single worker thread against a copy of
+ * the player's board; the chosen shot is handed back to the event thread,
+ * which applies it to the game, so the game itself is only ever changed on the
+ * event thread and a move that runs late never sees it change. Every move and
+ * result goes to the computer player on the worker, in order, so its targeting
+ * state needs no locking; only the hunt state a save encodes is locked.
+ * A turn that misses its deadline fires a random shot instead, and cancel()
+ * makes any turn still in flight a no-op, e.g. on New Game.
+ * All methods must be called on the event thread.
+ */
+public class TurnPipeline implements AutoCloseable 
+{
+    public static final int DEFAULT_DEADLINE_MILLIS = 1000;
+    private static final int NO_SHOT = -1; // Packed shots are never negative.
+    
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> 
+    {
+        Thread thread = new Thread(task, "computer-turn");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer deadline;
+    
+    private int generation;         // Bumped when a turn ends or is cancelled.
+    private Future<?> thinking;     // Current nextShot, if any.
+    private BattleshipsGame game;   // Game of the current turn.
+    private Runnable onDone;        // Told when the current turn has been applied.
+    private long turnStarted;       // GameMetrics start of the current turn.
+    
+    /** This creates a pipeline with the default deadline. */
+    public TurnPipeline() 
+    {
+        this(DEFAULT_DEADLINE_MILLIS);
+    }
+    
+    /** This creates a pipeline that gives the computer a set time per move. */
+    public TurnPipeline(int deadlineMillis) 
+    {
+        deadline = new Timer(deadlineMillis, e -> finish(generation, NO_SHOT));
+        deadline.setRepeats(false);
+    }
+    
+    /**
+     * Starts the computer's turn in the background.
+     * @param onDone Run on the event thread once the shot has been applied.
+     */
+    public void startComputerTurn(BattleshipsGame game, Runnable onDone) 
+    {
+        cancel();
+        turnStarted = GameMetrics.start();
+        int turn = generation;
+        this.game = game;
+        this.onDone = onDone;
+        ComputerPlayer computer = game.getComputerPlayer();
+        Board target = game.getPlayerBoard().copy(); // Still read if the turn runs out of time.
+        thinking = worker.submit(() -> 
+        {
+            int shot = NO_SHOT;
+            try 
+            {
+                shot = computer.nextShot(target);
+            } 
+            catch (RuntimeException e) 
+            {
+                System.err.println("Computer move failed: " + e.getMessage());
+            }
+            int chosen = shot;
+            SwingUtilities.invokeLater(() -> finish(turn, chosen));
+        });
+        deadline.restart();
+    }
+    
+    /** Abandons any turn in flight; its result will be ignored. */
+    public void cancel() 
+    {
+        generation++;
+        deadline.stop();
+        if (thinking != null) thinking.cancel(true);
+        thinking = null;
+        game = null;
+        onDone = null;
+    }
+    
+    /** Gets whether a computer turn is in flight. */
+    public boolean isBusy() 
+    {
+        return game != null;
+    }
+    
+    @Override
+    public void close() 
+    {
+        cancel();
+        worker.shutdownNow();
+    }
+    
+    /**
+     * Applies a turn's shot on the event thread.
+     * @param shot The computer's choice packed with Board.pack, or NO_SHOT if it failed or ran out of time.
+     */
+    private void finish(int turn, int shot) 
+    {
+        if (turn != generation || game == null) return; // Cancelled or already done.
+        BattleshipsGame current = game;
+        Runnable done = onDone;
+        if (shot == NO_SHOT) 
+        {
+            thinking.cancel(true);
+            System.err.println("Computer ran out of time; firing at random.");
+        }
+        thinking = null;
+        game = null;
+        onDone = null;
+        generation++;
+        deadline.stop();
+        
+        Board target = current.getPlayerBoard();
+        if (shot == NO_SHOT || !target.isValidShot(Board.rowOf(shot), Board.colOf(shot))) shot = randomShot(target);
+        int row = Board.rowOf(shot);
+        int col = Board.colOf(shot);
+        boolean hit = current.completeComputerTurn(row, col);
+        GameMetrics.COMPUTER_TURN.record(turnStarted);
+        ComputerPlayer computer = current.getComputerPlayer();
+        worker.execute(() -> computer.recordShotResult(row, col, hit)); // Queued behind any late move.
+        if (done != null) done.run();
+    }
+    
+    /** Picks any open cell, for when the computer cannot answer in time. */
+    private static int randomShot(Board board) 
+    {
+        int size = board.getSize();
+        ThreadLocalRandom rand = ThreadLocalRandom.current();
+        for (int tries = 0; tries < 64; tries++) 
+        {
+            int row = rand.nextInt(size);
+            int col = rand.nextInt(size);
+            if (board.isValidShot(row, col)) return Board.pack(row, col);
+        }
+        for (int cell = 0; cell < size * size; cell++) 
+        {
+            if (board.isValidShot(cell / size, cell % size)) return Board.pack(cell / size, cell % size);
+        }
+        throw new IllegalStateException("No open cells left");
+    }
+}
@@ -0,0 +1,150 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovers journaled games whose snapshots fall at every point of a new
+ * game's placements and of a salvo.
+ */
+class GameJournalTest 
+{
+    @TempDir
+    Path dir;
+    
+    @Test
+    void recoversAcrossSnapshotInEveryPosition() throws Exception 
+    {
+        for (int interval = 2; interval <= 40; interval++) 
+        {
+            assertRecovers(interval, false);
+        }
+    }
+    
+    @Test
+    void recoversSalvoGamesAcrossSnapshotInEveryPosition() throws Exception 
+    {
+        for (int interval = 2; interval <= 40; interval++) 
+        {
+            assertRecovers(interval, true);
+        }
+    }
+    
+    @Test
+    void leavesComputersTurnToTheCaller() throws Exception 
+    {
+        String base = dir.resolve("midturn").toString();
+        BattleshipsGame game = new BattleshipsGame(10, new SplittableRandom(1));
+        game.setQuiet(true);
+        SplittableRandom shots = new SplittableRandom(1);
+        try (GameJournal journal = GameJournal.start(base, game)) 
+        {
+            game.startNewGame();
+            while (game.isPlayerTurn()) 
+            {
+                int shot = nextShot(game.getComputerBoard(), shots);
+                game.firePlayerShot(Board.rowOf(shot), Board.colOf(shot)); // Stops at the first miss.
+            }
+        }
+        
+        BattleshipsGame recovered = GameJournal.recover(base);
+        recovered.getJournal().close();
+        assertFalse(recovered.isPlayerTurn());
+        assertEquals(game.getShotsFired(), recovered.getShotsFired());
+        assertEquals(cells(game.getPlayerBoard()), cells(recovered.getPlayerBoard()));
+    }
+    
+    @Test
+    void followsALoadedGame() throws Exception 
+    {
+        String base = dir.resolve("loaded").toString();
+        BattleshipsGame first = new BattleshipsGame(10, new SplittableRandom(2));
+        first.setQuiet(true);
+        BattleshipsGame loaded = new BattleshipsGame(8, new SplittableRandom(3));
+        loaded.setQuiet(true);
+        loaded.startNewGame();
+        SplittableRandom shots = new SplittableRandom(2);
+        try (GameJournal journal = GameJournal.start(base, first, 4)) 
+        {
+            first.startNewGame();
+            int shot = nextShot(first.getComputerBoard(), shots);
+            first.processPlayerShot(Board.rowOf(shot), Board.colOf(shot));
+            journal.follow(loaded);
+            for (int turn = 0; turn < 5 && !loaded.isGameOver(); turn++) 
+            {
+                shot = nextShot(loaded.getComputerBoard(), shots);
+                loaded.processPlayerShot(Board.rowOf(shot), Board.colOf(shot));
+            }
+            shot = nextShot(first.getComputerBoard(), shots);
+            first.processPlayerShot(Board.rowOf(shot), Board.colOf(shot)); // No longer journaled.
+        }
+        
+        BattleshipsGame recovered = GameJournal.recover(base);
+        recovered.getJournal().close();
+        assertEquals(loaded.getShotsFired(), recovered.getShotsFired());
+        assertEquals(cells(loaded.getPlayerBoard()), cells(recovered.getPlayerBoard()));
+        assertEquals(cells(loaded.getComputerBoard()), cells(recovered.getComputerBoard()));
+    }
+    
+    private void assertRecovers(int interval, boolean salvo) throws Exception 
+    {
+        String base = dir.resolve("journal" + interval + (salvo ? "s" : "")).toString();
+        BattleshipsGame game = new BattleshipsGame(10, new SplittableRandom(interval));
+        game.setQuiet(true);
+        game.setSalvo(salvo);
+        SplittableRandom shots = new SplittableRandom(interval);
+        try (GameJournal journal = GameJournal.start(base, game, interval)) 
+        {
+            for (int round = 0; round < 2; round++) 
+            {
+                game.startNewGame();
+                for (int turn = 0; turn < 6 && !game.isGameOver(); turn++) 
+                {
+                    int shot = nextShot(game.getComputerBoard(), shots);
+                    if (salvo) game.processPlayerSalvo(new int[] {shot}, 1);
+                    else game.processPlayerShot(Board.rowOf(shot), Board.colOf(shot));
+                }
+            }
+        }
+        
+        BattleshipsGame recovered = GameJournal.recover(base);
+        assertNotNull(recovered);
+        recovered.getJournal().close();
+        String where = "interval " + interval;
+        assertEquals(game.getShotsFired(), recovered.getShotsFired(), where);
+        assertEquals(game.isPlayerTurn(), recovered.isPlayerTurn(), where);
+        assertEquals(game.isSalvo(), recovered.isSalvo(), where);
+        assertEquals(cells(game.getPlayerBoard()), cells(recovered.getPlayerBoard()), where);
+        assertEquals(cells(game.getComputerBoard()), cells(recovered.getComputerBoard()), where);
+    }
+    
+    private static int nextShot(Board board, SplittableRandom random) 
+    {
+        int row;
+        int col;
+        do 
+        {
+            row = random.nextInt(board.getSize());
+            col = random.nextInt(board.getSize());
+        } while (!board.isValidShot(row, col));
+        return Board.pack(row, col);
+    }
+    
+    /** Ships and shots of a board, row by row. */
+    private static String cells(Board board) 
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < board.getSize(); row++) 
+        {
+            for (int col = 0; col < board.getSize(); col++) 
+            {
+                sb.append(board.getCellState(row, col, true));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that what KnownHits deduces from shot results and announced
+ * sinkings never contradicts where the ships really are.
+ */
+class KnownHitsTest 
+{
+    private static final String[] SHIP_NAMES = 
+    {
+        "Battleship", "Cruiser", "Destroyer", "Submarine"
+    };
+    
+    @Test
+    void neverMisplacesAHit() 
+    {
+        for (int game = 0; game < 2000; game++) 
+        {
+            SplittableRandom random = new SplittableRandom(game);
+            int size = 6 + random.nextInt(8);
+            Board board = new Board(size);
+            new Player("P", board, SHIP_NAMES, random.split()).placeShips();
+            KnownHits known = new KnownHits(size);
+            while (!board.allShipsSunk()) 
+            {
+                int row;
+                int col;
+                do 
+                {
+                    row = random.nextInt(size);
+                    col = random.nextInt(size);
+                } while (!board.isValidShot(row, col));
+                int cell = row * size + col;
+                if (board.recordShot(row, col)) 
+                {
+                    known.hit(cell);
+                    Ship.Type sunk = KnownHits.sunkBy(board, cell);
+                    if (sunk != null) known.sunk(cell, sunk);
+                }
+                assertAgrees(board, known, "game " + game);
+                if (random.nextInt(16) == 0) assertAgrees(board, KnownHits.fromBoard(board), "game " + game + " read back");
+            }
+        }
+    }
+    
+    private static void assertAgrees(Board board, KnownHits known, String where) 
+    {
+        int size = board.getSize();
+        for (int cell = 0; cell < size * size; cell++) 
+        {
+            if (!known.isHit(cell)) continue;
+            boolean sunk = board.getShipAt(cell / size, cell % size).isSunk();
+            assertFalse(known.isSunk(cell) && !sunk, where + ": cell " + cell + " is afloat");
+            assertFalse(known.isOpen(cell) && sunk, where + ": cell " + cell + " is sunk");
+        }
+    }
+}
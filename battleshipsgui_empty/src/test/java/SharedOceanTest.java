@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays free-for-alls with every player firing from its own thread, then
+ * checks the shared accounting against the board: each hit counted once,
+ * each ship sunk by exactly one shot and each player eliminated by exactly one.
+ */
+class SharedOceanTest 
+{
+    private static final int PLAYERS = 12;
+    
+    @Test
+    void accountsForEveryShotFromManyThreads() throws Exception 
+    {
+        for (long seed = 0; seed < 20; seed++) 
+        {
+            assertAccounted(seed);
+        }
+    }
+    
+    private static void assertAccounted(long seed) throws InterruptedException 
+    {
+        SplittableRandom random = new SplittableRandom(seed);
+        SharedOcean ocean = new SharedOcean(PLAYERS, 36, random.split());
+        int size = ocean.getBoard().getSize();
+        // Per player whose ships were shot: hits, ships sunk and fleets sunk as reported.
+        AtomicIntegerArray hits = new AtomicIntegerArray(PLAYERS);
+        AtomicIntegerArray sunk = new AtomicIntegerArray(PLAYERS);
+        AtomicIntegerArray fleetSunk = new AtomicIntegerArray(PLAYERS);
+        AtomicIntegerArray ownHits = new AtomicIntegerArray(PLAYERS);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] shooters = new Thread[PLAYERS];
+        for (int p = 0; p < PLAYERS; p++) 
+        {
+            int shooter = p;
+            SplittableRandom aim = random.split();
+            shooters[p] = new Thread(() -> 
+            {
+                try 
+                {
+                    go.await();
+                } 
+                catch (InterruptedException e) 
+                {
+                    return;
+                }
+                while (true) 
+                {
+                    int row = aim.nextInt(size);
+                    int col = aim.nextInt(size);
+                    SharedOcean.Shot shot = ocean.fire(shooter, row, col);
+                    if (shot == SharedOcean.Shot.OUT) return;
+                    int owner = ocean.getOwnerAt(row, col);
+                    switch (shot) 
+                    {
+                        case FLEET_SUNK:
+                            fleetSunk.incrementAndGet(owner);
+                            // Fall through: the last ship sank too.
+                        case SUNK:
+                            sunk.incrementAndGet(owner);
+                            // Fall through: it was a hit.
+                        case HIT:
+                            hits.incrementAndGet(owner);
+                            if (owner == shooter) ownHits.incrementAndGet(shooter);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            });
+            shooters[p].start();
+        }
+        go.countDown();
+        for (Thread shooter : shooters) shooter.join();
+        
+        String where = "seed " + seed;
+        assertTrue(ocean.isGameOver(), where);
+        int afloat = 0;
+        for (int p = 0; p < PLAYERS; p++) 
+        {
+            int cellsHit = 0;
+            int shipsSunk = 0;
+            int cellsLeft = 0;
+            for (int i = p * Player.FLEET.length; i < (p + 1) * Player.FLEET.length; i++) 
+            {
+                Ship ship = ocean.getBoard().getShip(i);
+                int step = ship.isVertical() ? size : 1;
+                for (int j = 0, cell = ship.getRow() * size + ship.getCol(); j < ship.getType().size; j++, cell += step) 
+                {
+                    if (ocean.getBoard().getCellState(cell / size, cell % size, false) == 'X') cellsHit++;
+                    else cellsLeft++;
+                }
+                if (ship.isSunk()) shipsSunk++;
+            }
+            String player = where + ", player " + p;
+            assertEquals(0, ownHits.get(p), player + " hit its own ship");
+            assertEquals(cellsHit, hits.get(p), player + " hits");
+            assertEquals(shipsSunk, sunk.get(p), player + " sinkings");
+            assertEquals(cellsLeft > 0, ocean.isAfloat(p), player + " afloat");
+            assertEquals(cellsLeft > 0 ? 0 : 1, fleetSunk.get(p), player + " eliminations");
+            if (cellsLeft > 0) afloat++;
+        }
+        assertEquals(afloat, ocean.getPlayersAfloat(), where);
+        assertTrue(afloat <= 1, where);
+        if (afloat == 1) assertNotEquals(-1, ocean.getWinner(), where);
+    }
+}
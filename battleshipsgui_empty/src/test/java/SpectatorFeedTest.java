@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Watches games through a small feed with spectators that keep up, that fall
+ * behind and skip to keyframes, and that poll from another thread, and checks
+ * that each rebuilds the game's final boards from what it was sent.
+ */
+class SpectatorFeedTest 
+{
+    @Test
+    void rebuildsBoardsAfterSkipping() 
+    {
+        for (int seed = 0; seed < 50; seed++) 
+        {
+            BattleshipsGame game = newGame(seed);
+            SpectatorFeed feed = new SpectatorFeed(16, 4);
+            feed.attach(game);
+            SpectatorFeed.Subscription slow = feed.subscribe();
+            SpectatorFeed.Subscription fast = feed.subscribe();
+            Replica slowView = new Replica();
+            Replica fastView = new Replica();
+            game.startNewGame();
+            SplittableRandom shots = new SplittableRandom(seed);
+            while (!game.isGameOver()) 
+            {
+                int shot = nextShot(game.getComputerBoard(), shots);
+                game.processPlayerShot(Board.rowOf(shot), Board.colOf(shot));
+                slow.poll(slowView, 1); // Slower than the game publishes.
+                fast.poll(fastView, Integer.MAX_VALUE);
+            }
+            slow.poll(slowView, Integer.MAX_VALUE);
+            fast.poll(fastView, Integer.MAX_VALUE);
+            
+            String where = "seed " + seed;
+            assertTrue(slow.getSkips() > 0, where + ": never lapped");
+            assertEquals(0, fast.getSkips(), where);
+            assertEquals(0, slow.getLag(), where);
+            assertEquals(boards(game), slowView.toString(), where + ", slow spectator");
+            assertEquals(boards(game), fastView.toString(), where + ", fast spectator");
+        }
+    }
+    
+    @Test
+    void rebuildsBoardsWhilePolledFromAnotherThread() throws Exception 
+    {
+        for (int seed = 0; seed < 20; seed++) 
+        {
+            BattleshipsGame game = newGame(seed);
+            SpectatorFeed feed = new SpectatorFeed(16, 4);
+            feed.attach(game);
+            SpectatorFeed.Subscription subscription = feed.subscribe();
+            Replica view = new Replica();
+            Thread spectator = new Thread(() -> 
+            {
+                while (!Thread.currentThread().isInterrupted()) 
+                {
+                    if (subscription.poll(view, 1) == 0) Thread.onSpinWait();
+                }
+            });
+            spectator.start();
+            game.startNewGame();
+            SplittableRandom shots = new SplittableRandom(seed);
+            while (!game.isGameOver()) 
+            {
+                int shot = nextShot(game.getComputerBoard(), shots);
+                game.processPlayerShot(Board.rowOf(shot), Board.colOf(shot));
+            }
+            spectator.interrupt();
+            spectator.join();
+            subscription.poll(view, Integer.MAX_VALUE);
+            
+            assertEquals(0, subscription.getLag(), "seed " + seed);
+            assertEquals(boards(game), view.toString(), "seed " + seed);
+        }
+    }
+    
+    private static BattleshipsGame newGame(int seed) 
+    {
+        BattleshipsGame game = new BattleshipsGame(10, new SplittableRandom(seed));
+        game.setQuiet(true);
+        return game;
+    }
+    
+    private static int nextShot(Board board, SplittableRandom random) 
+    {
+        int row;
+        int col;
+        do 
+        {
+            row = random.nextInt(board.getSize());
+            col = random.nextInt(board.getSize());
+        } while (!board.isValidShot(row, col));
+        return Board.pack(row, col);
+    }
+    
+    /** Both boards as an opponent sees them, player's first. */
+    private static String boards(BattleshipsGame game) 
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Board board : new Board[] {game.getPlayerBoard(), game.getComputerBoard()}) 
+        {
+            for (int row = 0; row < board.getSize(); row++) 
+            {
+                for (int col = 0; col < board.getSize(); col++) 
+                {
+                    sb.append(board.getCellState(row, col, false));
+                }
+            }
+        }
+        return sb.toString();
+    }
+    
+    /** What a spectator rebuilds from the frames it is sent. */
+    private static final class Replica implements SpectatorFeed.Viewer 
+    {
+        private char[] cells = new char[0]; // Player's board, then the computer's.
+        private int size;
+        
+        @Override
+        public void keyframe(SpectatorFeed.Keyframe keyframe) 
+        {
+            size = keyframe.getSize();
+            cells = new char[2 * size * size];
+            for (int b = 0, i = 0; b < 2; b++) 
+            {
+                for (int row = 0; row < size; row++) 
+                {
+                    for (int col = 0; col < size; col++) 
+                    {
+                        cells[i++] = keyframe.getCellState(row, col, b == 0);
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public void shot(boolean playerBoard, int row, int col, boolean hit) 
+        {
+            cells[(playerBoard ? 0 : size * size) + row * size + col] = hit ? 'X' : 'O';
+        }
+        
+        @Override
+        public String toString() 
+        {
+            return new String(cells);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.util.Random;
+
+/**
+ * This class builds boards and shot orders for the benchmark fixtures.
+ * All randomness is seeded so every run measures the same positions.
+ */
+public final class BenchBoards 
+{
+    public static final long SEED = 42L;
+    
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+    
+    private BenchBoards() 
+    {
+    }
+    
+    /**
+     * Places random ships until they cover the given share of cells.
+     * Gives up after a bounded number of attempts on crowded boards.
+     * @return number of ships placed.
+     */
+    public static int fill(Board board, int fillPercent, Random rand) 
+    {
+        int size = board.getSize();
+        long target = (long) size * size * fillPercent / 100;
+        long covered = 0;
+        int attempts = size * size * 4;
+        while (covered < target && attempts-- > 0) 
+        {
+            Ship.Type type = TYPES[rand.nextInt(TYPES.length)];
+            if (board.placeShip(rand.nextInt(size), rand.nextInt(size), type, type.name())) 
+            {
+                covered += type.size;
+            }
+        }
+        return board.getShipCount();
+    }
+    
+    /** Gives every cell of the board once, in random order, packed as row * size + col. */
+    public static int[] shuffledCells(int size, Random rand) 
+    {
+        int[] cells = new int[size * size];
+        for (int i = 0; i < cells.length; i++) 
+        {
+            cells[i] = i;
+        }
+        for (int i = cells.length - 1; i > 0; i--) 
+        {
+            int j = rand.nextInt(i + 1);
+            int tmp = cells[i];
+            cells[i] = cells[j];
+            cells[j] = tmp;
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,36 @@
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * This fixture asks the computer for shots against a partly shot board.
+ * nextShot does not change the board, so every call sees the same position.
+ */
+public class MoveFixture implements battleships.bench.Fixtures.Moves 
+{
+    private static final String[] SHIP_NAMES = 
+    {
+        "Enemy Flagship", "Enemy Cruiser", "Enemy Destroyer", "Enemy Submarine"
+    };
+    
+    private Board target;
+    private ComputerPlayer computer;
+    
+    public void setUp(int boardSize, int fillPercent) 
+    {
+        Random rand = new Random(BenchBoards.SEED);
+        target = new Board(boardSize);
+        new Player("Player", target, SHIP_NAMES, new SplittableRandom(BenchBoards.SEED)).placeShips();
+        int[] order = BenchBoards.shuffledCells(boardSize, rand);
+        int shots = (int) ((long) order.length * fillPercent / 100);
+        for (int i = 0; i < shots; i++) 
+        {
+            target.recordShot(order[i] / boardSize, order[i] % boardSize);
+        }
+        computer = new ComputerPlayer("Computer", new Board(boardSize), SHIP_NAMES, new SplittableRandom(BenchBoards.SEED));
+    }
+    
+    public int makeMove() 
+    {
+        return computer.nextShot(target);
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Random;
+
+/**
+ * This fixture places ships on empty boards.
+ */
+public class PlacementFixture implements battleships.bench.Fixtures.Placement 
+{
+    private static final String[] SHIP_NAMES = 
+    {
+        "Battleship", "Cruiser", "Destroyer", "Submarine"
+    };
+    
+    public static final int FLEET_BATCH = 1000;
+    
+    private final Random rand = new Random(BenchBoards.SEED);
+    private int size;
+    private int fillPercent;
+    private PlacementEngine engine;
+    private int[] fleets;
+    
+    public void setUp(int boardSize, int fillPercent) 
+    {
+        this.size = boardSize;
+        this.fillPercent = fillPercent;
+        this.engine = new PlacementEngine(boardSize);
+        this.fleets = new int[Player.FLEET.length * FLEET_BATCH];
+    }
+    
+    public int fillBoard() 
+    {
+        return BenchBoards.fill(new Board(size), fillPercent, rand);
+    }
+    
+    public int placeFleet() 
+    {
+        Board board = new Board(size);
+        new Player("Player", board, SHIP_NAMES).placeShips();
+        return board.getShipCount();
+    }
+    
+    public int sampleFleets() 
+    {
+        return engine.sampleFleets(Player.FLEET, FLEET_BATCH, rand, fleets);
+    }
+}
@@ -0,0 +1,43 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This fixture saves and loads a game part way through play.
+ * The save file lives in the temp directory and is removed on exit.
+ */
+public class SaveFixture implements battleships.bench.Fixtures.Saves 
+{
+    private BattleshipsGame game;
+    private String path;
+    
+    public void setUp(int boardSize, int fillPercent) throws IOException 
+    {
+        File file = File.createTempFile("battleships-bench", ".dat");
+        file.deleteOnExit();
+        path = file.getPath();
+        
+        game = new BattleshipsGame(boardSize);
+        game.setQuiet(true); // Messages would be printed later, by the console thread, while measuring.
+        game.startNewGame();
+        int[] order = BenchBoards.shuffledCells(boardSize, new Random(BenchBoards.SEED));
+        int shots = (int) ((long) order.length * fillPercent / 100);
+        for (int i = 0; i < shots && !game.isGameOver(); i++) 
+        {
+            game.processPlayerShot(order[i] / boardSize, order[i] % boardSize);
+        }
+        if (!game.saveGame(path)) throw new IOException("Cannot write " + path);
+    }
+    
+    public boolean save() 
+    {
+        return game.saveGame(path);
+    }
+    
+    public Object load() 
+    {
+        BattleshipsGame loaded = BattleshipsGame.loadGame(path);
+        if (loaded != null) loaded.setQuiet(true);
+        return loaded;
+    }
+}
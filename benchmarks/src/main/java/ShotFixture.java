@@ -0,0 +1,57 @@
+import java.util.Random;
+
+/**
+ * This fixture fires shots at a board in a fixed random order.
+ * Every shot is valid; once the board is exhausted a fresh one is built,
+ * which is amortized over size * size shots.
+ */
+public class ShotFixture implements battleships.bench.Fixtures.Shots 
+{
+    private final Random rand = new Random(BenchBoards.SEED);
+    private int size;
+    private int fillPercent;
+    private Board board;
+    private int[] order;
+    private int next;
+    private int[] salvo = new int[0];
+    private int[] results = new int[0];
+    
+    public void setUp(int boardSize, int fillPercent) 
+    {
+        this.size = boardSize;
+        this.fillPercent = fillPercent;
+        this.order = BenchBoards.shuffledCells(boardSize, rand);
+        reset();
+    }
+    
+    public boolean shoot() 
+    {
+        if (next == order.length) reset();
+        int cell = order[next++];
+        return board.recordShot(cell / size, cell % size);
+    }
+    
+    public int salvo(int count) 
+    {
+        if (order.length - next < count) reset();
+        if (salvo.length < count) 
+        {
+            salvo = new int[count];
+            results = new int[count];
+        }
+        for (int i = 0; i < count; i++) 
+        {
+            int cell = order[next++];
+            salvo[i] = Board.pack(cell / size, cell % size);
+        }
+        return board.recordSalvo(salvo, count, results);
+    }
+    
+    /** Builds a fresh board with ships at the fill level. */
+    private void reset() 
+    {
+        board = new Board(size);
+        BenchBoards.fill(board, fillPercent, rand);
+        next = 0;
+    }
+}
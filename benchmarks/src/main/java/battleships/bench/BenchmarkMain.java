@@ -0,0 +1,26 @@
+package battleships.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always on,
+ * so every result reports allocation rate next to throughput.
+ * Accepts the usual JMH command line, e.g. "BoardBenchmark -p boardSize=100".
+ */
+public final class BenchmarkMain 
+{
+    private BenchmarkMain() 
+    {
+    }
+    
+    public static void main(String[] args) throws Exception 
+    {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
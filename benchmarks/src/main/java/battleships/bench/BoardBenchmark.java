@@ -0,0 +1,59 @@
+package battleships.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures Board.recordShot, Board.recordSalvo and Board.placeShip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark 
+{
+    @Param({"10", "100", "1000"})
+    public int boardSize;
+    
+    @Param({"10", "30", "50"})
+    public int fillPercent; // Share of cells covered by ships.
+    
+    static final int SALVO = 5;
+    
+    private Fixtures.Shots shots;
+    private Fixtures.Placement placement;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception 
+    {
+        shots = Fixtures.create(Fixtures.Shots.class, "ShotFixture");
+        shots.setUp(boardSize, fillPercent);
+        placement = Fixtures.create(Fixtures.Placement.class, "PlacementFixture");
+        placement.setUp(boardSize, fillPercent);
+    }
+    
+    /** One shot at the next untried cell; the board is rebuilt once every cell is shot. */
+    @Benchmark
+    public boolean recordShot() 
+    {
+        return shots.shoot();
+    }
+    
+    /** A salvo at the next untried cells, scored per shot to compare with recordShot. */
+    @Benchmark
+    @OperationsPerInvocation(SALVO)
+    public int recordSalvo() 
+    {
+        return shots.salvo(SALVO);
+    }
+    
+    /** Fills an empty board with random ships up to the fill level. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int placeShip() 
+    {
+        return placement.fillBoard();
+    }
+}
@@ -0,0 +1,66 @@
+package battleships.bench;
+
+/**
+ * Hooks between the benchmarks and the game.
+ * The game classes live in the default package, which JMH benchmark classes
+ * cannot use, so each fixture is implemented next to them and loaded by name.
+ * Calls through these interfaces are monomorphic and inline like direct calls.
+ */
+public final class Fixtures 
+{
+    /** Common setup for every fixture. */
+    public interface Fixture 
+    {
+        /**
+         * Builds the state to measure.
+         * @param boardSize Cells per side.
+         * @param fillPercent How full the board is, as the benchmark defines it.
+         */
+        void setUp(int boardSize, int fillPercent) throws Exception;
+    }
+    
+    /** Board.recordShot and recordSalvo on a board whose ships cover fillPercent of cells. */
+    public interface Shots extends Fixture 
+    {
+        boolean shoot();
+        int salvo(int count); // Fires the next count cells as one salvo.
+    }
+    
+    /** Board.placeShip up to fillPercent coverage, Player.placeShips and bulk fleets. */
+    public interface Placement extends Fixture 
+    {
+        int fillBoard();
+        int placeFleet();
+        int sampleFleets(); // Generates a batch of 1000 fleets.
+    }
+    
+    /** ComputerPlayer.nextShot against a board with fillPercent of cells shot. */
+    public interface Moves extends Fixture 
+    {
+        int makeMove();
+    }
+    
+    /** BattleshipsGame.saveGame/loadGame with fillPercent of cells shot. */
+    public interface Saves extends Fixture 
+    {
+        boolean save();
+        Object load();
+    }
+    
+    private Fixtures() 
+    {
+    }
+    
+    /** Creates the named default-package fixture. */
+    static <T extends Fixture> T create(Class<T> api, String className) 
+    {
+        try 
+        {
+            return api.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } 
+        catch (ReflectiveOperationException e) 
+        {
+            throw new IllegalStateException("Cannot create fixture " + className, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package battleships.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures Player.placeShips, PlacementEngine.sampleFleets and ComputerPlayer.nextShot.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayerBenchmark 
+{
+    @Param({"10", "100", "1000"})
+    public int boardSize;
+    
+    @Param({"10", "50", "90"})
+    public int fillPercent; // Share of opponent cells already shot.
+    
+    private Fixtures.Placement placement;
+    private Fixtures.Moves moves;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception 
+    {
+        placement = Fixtures.create(Fixtures.Placement.class, "PlacementFixture");
+        placement.setUp(boardSize, fillPercent);
+        moves = Fixtures.create(Fixtures.Moves.class, "MoveFixture");
+        moves.setUp(boardSize, fillPercent);
+    }
+    
+    /** Places the standard fleet on an empty board. */
+    @Benchmark
+    public int placeShips() 
+    {
+        return placement.placeFleet();
+    }
+    
+    /** Generates 1000 fleets with PlacementEngine.sampleFleets. */
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public int sampleFleets() 
+    {
+        return placement.sampleFleets();
+    }
+    
+    /** Picks the computer's next shot. */
+    @Benchmark
+    public int makeMove() 
+    {
+        return moves.makeMove();
+    }
+}
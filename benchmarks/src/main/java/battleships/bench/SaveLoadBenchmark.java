@@ -0,0 +1,43 @@
+package battleships.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures BattleshipsGame.saveGame and BattleshipsGame.loadGame.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SaveLoadBenchmark 
+{
+    @Param({"10", "100", "1000"})
+    public int boardSize;
+    
+    @Param({"10", "50", "90"})
+    public int fillPercent; // Share of computer cells shot before saving.
+    
+    private Fixtures.Saves saves;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception 
+    {
+        saves = Fixtures.create(Fixtures.Saves.class, "SaveFixture");
+        saves.setUp(boardSize, fillPercent);
+    }
+    
+    @Benchmark
+    public boolean saveGame() 
+    {
+        return saves.save();
+    }
+    
+    @Benchmark
+    public Object loadGame() 
+    {
+        return saves.load();
+    }
+}